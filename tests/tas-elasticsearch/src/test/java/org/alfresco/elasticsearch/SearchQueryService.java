@@ -11,6 +11,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -20,13 +21,13 @@ import com.google.common.collect.Sets;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 
+import org.alfresco.elasticsearch.utility.QueryConvergenceReport;
 import org.alfresco.rest.core.RestWrapper;
 import org.alfresco.rest.search.RestRequestQueryModel;
 import org.alfresco.rest.search.RestRequestTemplatesModel;
 import org.alfresco.rest.search.SearchNodeModel;
 import org.alfresco.rest.search.SearchRequest;
 import org.alfresco.rest.search.SearchResponse;
-import org.alfresco.utility.Utility;
 import org.alfresco.utility.model.UserModel;
 
 /** A class providing methods for testing search queries. */
@@ -34,6 +35,9 @@ public class SearchQueryService
 {
     /** Maximum time to allow for search query to return correct results. */
     private static final int MAX_TIME = 30000;
+    /** Most queries converge within a few hundred milliseconds, so the first retries are quick. The interval then doubles up to the cap. */
+    private static final long INITIAL_POLL_INTERVAL_MS = 50;
+    private static final long MAX_POLL_INTERVAL_MS = 1000;
     @Autowired
     private RestWrapper client;
 
@@ -119,19 +123,43 @@ public class SearchQueryService
 
     private void expectResultsFromQuery(SearchRequest searchRequest, UserModel user, Consumer<SearchResponse> assertionMethod)
     {
-        try
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(MAX_TIME);
+        final String query = Optional.ofNullable(searchRequest.getQuery()).map(RestRequestQueryModel::getQuery).orElse("");
+        long interval = INITIAL_POLL_INTERVAL_MS;
+        for (int attempt = 1;; attempt++)
         {
-            Utility.sleep(1000, MAX_TIME, () -> {
+            try
+            {
                 SearchResponse response = client.authenticateUser(user)
                         .withSearchAPI()
                         .search(searchRequest);
                 client.assertStatusCodeIs(HttpStatus.OK);
                 assertionMethod.accept(response);
-            });
-        }
-        catch (InterruptedException e)
-        {
-            fail("InterruptedException received while waiting for results.");
+                QueryConvergenceReport.record(query, attempt, System.nanoTime() - start, true);
+                return;
+            }
+            catch (AssertionError | RuntimeException e)
+            {
+                // A failed REST call is retried as well as a wrong result, e.g. while the search service is still starting.
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                {
+                    QueryConvergenceReport.record(query, attempt, System.nanoTime() - start, false);
+                    throw e;
+                }
+                try
+                {
+                    // The last attempt is made at the deadline.
+                    Thread.sleep(Math.min(interval, TimeUnit.NANOSECONDS.toMillis(remaining) + 1));
+                }
+                catch (InterruptedException interrupted)
+                {
+                    Thread.currentThread().interrupt();
+                    fail("InterruptedException received while waiting for results.");
+                }
+                interval = Math.min(interval * 2, MAX_POLL_INTERVAL_MS);
+            }
         }
     }
 
@@ -5,6 +5,7 @@ import java.io.IOException;
 import org.testcontainers.containers.GenericContainer;
 
 import org.alfresco.tas.AlfrescoStackInitializer;
+import org.alfresco.tas.SearchEngineClient;
 import org.alfresco.tas.SearchEngineType;
 
 /**
@@ -139,6 +140,12 @@ public class AlfrescoStackInitializerESBasicAuth extends AlfrescoStackInitialize
         }
     }
 
+    @Override
+    protected SearchEngineClient createSearchEngineClient(GenericContainer searchEngineContainer)
+    {
+        return super.createSearchEngineClient(searchEngineContainer).withBasicAuth(SEARCH_ENGINE_USERNAME, SEARCH_ENGINE_PASSWORD);
+    }
+
     @Override
     protected GenericContainer createAlfrescoContainer()
     {
@@ -0,0 +1,77 @@
+package org.alfresco.elasticsearch.benchmark;
+
+import static org.alfresco.tas.SystemPropertyHelper.getSystemProperty;
+import static org.alfresco.utility.report.log.Step.STEP;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import org.alfresco.elasticsearch.utility.BenchmarkReport;
+import org.alfresco.tas.AlfrescoStackInitializer;
+import org.alfresco.utility.network.ServerHealth;
+
+/**
+ * Reproduces a batch import: every concurrency level in -Dbenchmark.ingest.concurrency (8,32 by default) uploads -Dbenchmark.ingest.documents (1000) documents.
+ * <p>
+ * The documents go into a folder tree -Dbenchmark.ingest.folderDepth (2) levels deep with -Dbenchmark.ingest.foldersPerLevel (5) sub-folders per folder. The mime type mix is
+ * set with -Dbenchmark.ingest.mimeTypes (text/plain:6,text/html:2,application/json:1,application/octet-stream:1). The sizes follow a log-normal distribution with a median of
+ * -Dbenchmark.ingest.size.median.kb (32), a spread of -Dbenchmark.ingest.size.sigma (1.0) and a maximum of -Dbenchmark.ingest.size.max.kb (10240). The results are written to
+ * target/benchmark-reports/bulk-ingestion.{csv,json}, and the run fails if more than -Dbenchmark.ingest.maxErrorRatePercent (1) of the uploads fail.
+ */
+@ContextConfiguration(locations = "classpath:alfresco-elasticsearch-context.xml",
+        initializers = AlfrescoStackInitializer.class)
+@SuppressWarnings({"PMD.JUnit4TestShouldUseTestAnnotation", "PMD.JUnitTestsShouldIncludeAssert"}) // these are testng tests
+public class BulkIngestionBenchmark extends AbstractTestNGSpringContextTests
+{
+    @Autowired
+    private ServerHealth serverHealth;
+
+    @BeforeClass(alwaysRun = true)
+    public void checkServer()
+    {
+        serverHealth.isServerReachable();
+        serverHealth.assertServerIsOnline();
+    }
+
+    @Test(groups = "benchmark")
+    public void measureBulkIngestion() throws IOException, InterruptedException
+    {
+        final int documents = Integer.parseInt(getSystemProperty("benchmark.ingest.documents", "1000"));
+        final double maxErrorRate = Double.parseDouble(getSystemProperty("benchmark.ingest.maxErrorRatePercent", "1"));
+        final URI repoBaseUri = URI.create("http://" + AlfrescoStackInitializer.alfresco.getHost() + ":" + AlfrescoStackInitializer.alfresco.getMappedPort(8080));
+
+        final BenchmarkReport report = new BenchmarkReport("bulk-ingestion");
+        for (int concurrency : Arrays.stream(getSystemProperty("benchmark.ingest.concurrency", "8,32").split(",")).map(String::strip).mapToInt(Integer::parseInt).toArray())
+        {
+            STEP("Upload " + documents + " documents with " + concurrency + " concurrent uploads.");
+            try (LoadRepoHttpClient client = new LoadRepoHttpClient(repoBaseUri, concurrency))
+            {
+                final BulkIngestionDriver.Result result = new BulkIngestionDriver(client)
+                        .withDocuments(documents)
+                        .withConcurrency(concurrency)
+                        .withFolderTree(Integer.parseInt(getSystemProperty("benchmark.ingest.folderDepth", "2")),
+                                Integer.parseInt(getSystemProperty("benchmark.ingest.foldersPerLevel", "5")))
+                        .withMimeTypes(getSystemProperty("benchmark.ingest.mimeTypes", "text/plain:6,text/html:2,application/json:1,application/octet-stream:1"))
+                        .withSizes(Integer.parseInt(getSystemProperty("benchmark.ingest.size.median.kb", "32")),
+                                Double.parseDouble(getSystemProperty("benchmark.ingest.size.sigma", "1.0")),
+                                Integer.parseInt(getSystemProperty("benchmark.ingest.size.max.kb", "10240")))
+                        .run("BulkIngestion" + concurrency + "x" + System.currentTimeMillis());
+
+                final Map<String, Object> row = result.toRow();
+                report.addRow(row);
+                STEP("Result: " + row);
+            }
+        }
+        STEP("Bulk ingestion report written to " + report.write().toAbsolutePath());
+        report.getRows().forEach(row -> Assert.assertTrue((double) row.get("errorRatePercent") <= maxErrorRate, "Too many uploads failed: " + row));
+    }
+}
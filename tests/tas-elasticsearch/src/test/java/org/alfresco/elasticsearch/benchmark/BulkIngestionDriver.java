@@ -0,0 +1,342 @@
+package org.alfresco.elasticsearch.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.AtomicLongMap;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import org.alfresco.elasticsearch.utility.BenchmarkReport;
+
+/**
+ * Uploads a batch of documents into a folder tree, the way a nightly batch import would, and measures the throughput, the latency of the uploads and the errors returned by the
+ * repository.
+ * <p>
+ * The documents are spread over the leaf folders of a tree of the given depth and width. Their mime type is picked from a weighted mix and their size from a log-normal
+ * distribution. The content is generated up front, a fixed number of samples per mime type, and shared by the uploads, so the driver itself barely allocates while it runs. Text
+ * based mime types get readable content which can be transformed and indexed, any other mime type gets random bytes.
+ */
+public class BulkIngestionDriver
+{
+    private static final int CONTENT_SAMPLES_PER_MIME_TYPE = 64;
+    private static final String[] WORDS = {"alfresco", "search", "index", "content", "document", "repository", "folder", "migration", "benchmark", "elasticsearch",
+            "transform", "metadata", "property", "version", "workflow", "archive", "record", "policy", "invoice", "contract"};
+
+    private final LoadRepoHttpClient client;
+    private int documents = 1000;
+    private int concurrency = 16;
+    private int folderDepth = 2;
+    private int foldersPerLevel = 5;
+    private Map<String, Integer> mimeTypeWeights = Map.of("text/plain", 1);
+    private int medianSizeKb = 32;
+    private double sizeSigma = 1.0;
+    private int maxSizeKb = 10 * 1024;
+
+    /**
+     * @param client
+     *            The client to upload with, its pool should have at least as many connections as the concurrency of the driver.
+     */
+    public BulkIngestionDriver(LoadRepoHttpClient client)
+    {
+        this.client = client;
+    }
+
+    public BulkIngestionDriver withDocuments(int documents)
+    {
+        this.documents = documents;
+        return this;
+    }
+
+    public BulkIngestionDriver withConcurrency(int concurrency)
+    {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * @param depth
+     *            The number of levels of folders below the root folder of the batch, 0 to upload into the root folder.
+     * @param foldersPerLevel
+     *            The number of sub-folders of every folder.
+     */
+    public BulkIngestionDriver withFolderTree(int depth, int foldersPerLevel)
+    {
+        this.folderDepth = depth;
+        this.foldersPerLevel = foldersPerLevel;
+        return this;
+    }
+
+    /**
+     * @param mimeTypeWeights
+     *            The relative weight of every mime type, e.g. text/plain=3 and text/html=1 for three plain text documents to one HTML document.
+     */
+    public BulkIngestionDriver withMimeTypes(Map<String, Integer> mimeTypeWeights)
+    {
+        this.mimeTypeWeights = Map.copyOf(mimeTypeWeights);
+        return this;
+    }
+
+    /**
+     * Parse a mime type mix such as {@code text/plain:3,text/html:1}.
+     *
+     * @param mix
+     *            Comma separated mime types, each one with an optional weight (1 by default).
+     */
+    public BulkIngestionDriver withMimeTypes(String mix)
+    {
+        final Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(","))
+        {
+            final String[] mimeTypeAndWeight = entry.strip().split(":");
+            weights.put(mimeTypeAndWeight[0], mimeTypeAndWeight.length > 1 ? Integer.parseInt(mimeTypeAndWeight[1]) : 1);
+        }
+        return withMimeTypes(weights);
+    }
+
+    /**
+     * @param medianSizeKb
+     *            The median size of the documents.
+     * @param sigma
+     *            The spread of the log-normal distribution of the sizes, 0 for documents of the same size.
+     * @param maxSizeKb
+     *            The largest size of a document.
+     */
+    public BulkIngestionDriver withSizes(int medianSizeKb, double sigma, int maxSizeKb)
+    {
+        this.medianSizeKb = medianSizeKb;
+        this.sizeSigma = sigma;
+        this.maxSizeKb = maxSizeKb;
+        return this;
+    }
+
+    /**
+     * Create the folder tree and upload the documents into it.
+     *
+     * @param name
+     *            The name of the root folder of the batch, created in the home folder of the user.
+     * @return The measurements of the uploads. The creation of the folder tree isn't included.
+     */
+    public Result run(String name) throws IOException, InterruptedException
+    {
+        final LoadRepoHttpClient.NodeResult root = client.createFolder("-my-", name);
+        if (!root.isSuccessful())
+        {
+            throw new IOException("Failed to create the folder `" + name + "`, HTTP status " + root.status() + ".");
+        }
+        final List<String> targetFolders = createFolderTree(root.nodeId());
+        final List<Sample> samples = createContentSamples();
+
+        final Recorder latencies = new Recorder(3);
+        final AtomicLongMap<String> outcomes = AtomicLongMap.create();
+        final AtomicLong uploadedBytes = new AtomicLong();
+        final Semaphore inFlight = new Semaphore(concurrency);
+
+        final long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for (int i = 0; i < documents; i++)
+            {
+                inFlight.acquire();
+                final Sample sample = samples.get(ThreadLocalRandom.current().nextInt(samples.size()));
+                final String folder = targetFolders.get(i % targetFolders.size());
+                final String fileName = "doc-" + i + sample.extension();
+                executor.execute(() -> {
+                    final long sent = System.nanoTime();
+                    try
+                    {
+                        final LoadRepoHttpClient.NodeResult result = client.upload(folder, fileName, sample.mimeType(), sample.content());
+                        outcomes.incrementAndGet(result.isSuccessful() ? "OK" : "HTTP " + result.status());
+                        if (result.isSuccessful())
+                        {
+                            uploadedBytes.addAndGet(sample.content().length);
+                        }
+                    }
+                    catch (IOException | RuntimeException e)
+                    {
+                        outcomes.incrementAndGet(e.getClass().getName());
+                    }
+                    finally
+                    {
+                        latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sent));
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        return new Result(root.nodeId(), documents, concurrency, Duration.ofNanos(System.nanoTime() - start), uploadedBytes.get(), new TreeMap<>(outcomes.asMap()),
+                latencies.getIntervalHistogram());
+    }
+
+    private List<String> createFolderTree(String rootFolderId) throws IOException
+    {
+        List<String> level = List.of(rootFolderId);
+        for (int depth = 1; depth <= folderDepth; depth++)
+        {
+            final List<String> nextLevel = new ArrayList<>();
+            for (String parent : level)
+            {
+                for (int i = 0; i < foldersPerLevel; i++)
+                {
+                    final LoadRepoHttpClient.NodeResult folder = client.createFolder(parent, "level" + depth + "-" + i);
+                    if (!folder.isSuccessful())
+                    {
+                        throw new IOException("Failed to create a folder at depth " + depth + ", HTTP status " + folder.status() + ".");
+                    }
+                    nextLevel.add(folder.nodeId());
+                }
+            }
+            level = nextLevel;
+        }
+        return level;
+    }
+
+    private List<Sample> createContentSamples()
+    {
+        // A fixed seed, so that two runs upload the same content.
+        final Random random = new Random(42);
+        final int totalWeight = mimeTypeWeights.values().stream().mapToInt(Integer::intValue).sum();
+        final List<Sample> samples = new ArrayList<>();
+        for (Map.Entry<String, Integer> mimeType : new TreeMap<>(mimeTypeWeights).entrySet())
+        {
+            // Every mime type gets a number of samples proportional to its weight, so picking a sample uniformly follows the mix.
+            final int count = Math.max(1, CONTENT_SAMPLES_PER_MIME_TYPE * mimeTypeWeights.size() * mimeType.getValue() / totalWeight);
+            for (int i = 0; i < count; i++)
+            {
+                final int size = (int) Math.min(maxSizeKb * 1024L, Math.max(1, Math.round(medianSizeKb * 1024 * Math.exp(sizeSigma * random.nextGaussian()))));
+                samples.add(new Sample(mimeType.getKey(), extensionOf(mimeType.getKey()), generateContent(mimeType.getKey(), size, random)));
+            }
+        }
+        return samples;
+    }
+
+    private static byte[] generateContent(String mimeType, int size, Random random)
+    {
+        if (!isText(mimeType))
+        {
+            final byte[] content = new byte[size];
+            random.nextBytes(content);
+            return content;
+        }
+
+        final StringBuilder text = new StringBuilder(size + 64);
+        switch (mimeType)
+        {
+        case "text/html" -> text.append("<html><body><p>");
+        case "application/json" -> text.append("{\"text\":\"");
+        case "application/xml", "text/xml" -> text.append("<document><text>");
+        default ->
+        {}
+        }
+        // The text of a JSON document is inside a string, where a line break has to be escaped.
+        final String sentenceEnd = "application/json".equals(mimeType) ? ".\\n" : ".\n";
+        while (text.length() < size)
+        {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(10) == 0 ? sentenceEnd : " ");
+        }
+        switch (mimeType)
+        {
+        case "text/html" -> text.append("</p></body></html>");
+        case "application/json" -> text.append("\"}");
+        case "application/xml", "text/xml" -> text.append("</text></document>");
+        default ->
+        {}
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean isText(String mimeType)
+    {
+        return mimeType.startsWith("text/") || "application/json".equals(mimeType) || "application/xml".equals(mimeType);
+    }
+
+    private static String extensionOf(String mimeType)
+    {
+        return switch (mimeType)
+        {
+        case "text/plain" -> ".txt";
+        case "text/html" -> ".html";
+        case "text/csv" -> ".csv";
+        case "text/xml", "application/xml" -> ".xml";
+        case "application/json" -> ".json";
+        case "application/pdf" -> ".pdf";
+        default -> ".bin";
+        };
+    }
+
+    private record Sample(String mimeType, String extension, byte[] content)
+    {}
+
+    /**
+     * The measurements of a batch.
+     *
+     * @param rootFolderId
+     *            The id of the root folder of the batch, e.g. to query its documents with ANCESTOR wherever the home folder of the user is.
+     * @param documents
+     *            The number of uploads.
+     * @param concurrency
+     *            The number of uploads in flight at once.
+     * @param duration
+     *            The time taken by all the uploads.
+     * @param uploadedBytes
+     *            The size of the documents which were uploaded successfully.
+     * @param outcomes
+     *            The number of uploads per outcome: OK, the HTTP status of the response, or the class of the exception.
+     * @param latencies
+     *            The latencies of the uploads, in microseconds.
+     */
+    public record Result(String rootFolderId, int documents, int concurrency, Duration duration, long uploadedBytes, Map<String, Long> outcomes, Histogram latencies)
+    {
+        public long getFailures()
+        {
+            return documents - outcomes.getOrDefault("OK", 0L);
+        }
+
+        public double getErrorRateInPercents()
+        {
+            return documents == 0 ? 0 : getFailures() * 100.0 / documents;
+        }
+
+        public double getUploadsPerSecond()
+        {
+            return duration.isZero() ? 0 : outcomes.getOrDefault("OK", 0L) * 1000.0 / duration.toMillis();
+        }
+
+        /** @return The measurements as a row of a {@link BenchmarkReport}. */
+        public Map<String, Object> toRow()
+        {
+            final Map<String, Object> row = new LinkedHashMap<>();
+            row.put("documents", documents);
+            row.put("concurrency", concurrency);
+            row.put("durationMs", duration.toMillis());
+            row.put("uploadsPerSecond", round(getUploadsPerSecond()));
+            row.put("megabytesPerSecond", round(duration.isZero() ? 0 : uploadedBytes / (1024.0 * 1024.0) * 1000 / duration.toMillis()));
+            row.put("errorRatePercent", round(getErrorRateInPercents()));
+            row.put("p50Ms", round(latencies.getValueAtPercentile(50) / 1000.0));
+            row.put("p90Ms", round(latencies.getValueAtPercentile(90) / 1000.0));
+            row.put("p99Ms", round(latencies.getValueAtPercentile(99) / 1000.0));
+            row.put("p999Ms", round(latencies.getValueAtPercentile(99.9) / 1000.0));
+            row.put("maxMs", round(latencies.getMaxValue() / 1000.0));
+            row.put("outcomes", outcomes.toString());
+            return row;
+        }
+
+        private static double round(double value)
+        {
+            return Math.round(value * 10) / 10.0;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.alfresco.elasticsearch.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.model.Statistics;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.GenericContainer;
+
+/**
+ * Follows the Docker stats of a running container and keeps its peak memory usage. For a JVM container this is the resident memory of the process, so it includes the heap as
+ * well as the metaspace, thread stacks and direct buffers.
+ */
+public class ContainerMemorySampler implements AutoCloseable
+{
+    private final AtomicLong peakMemoryBytes = new AtomicLong();
+    private final ResultCallback.Adapter<Statistics> callback;
+
+    private ContainerMemorySampler(GenericContainer<?> container)
+    {
+        callback = DockerClientFactory.instance().client()
+                .statsCmd(container.getContainerId())
+                .exec(new ResultCallback.Adapter<>() {
+                    @Override
+                    public void onNext(Statistics statistics)
+                    {
+                        if (statistics.getMemoryStats() != null && statistics.getMemoryStats().getUsage() != null)
+                        {
+                            peakMemoryBytes.accumulateAndGet(statistics.getMemoryStats().getUsage(), Math::max);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Start sampling a container.
+     *
+     * @param container
+     *            The running container.
+     * @return The sampler, to be closed once the container has stopped.
+     */
+    public static ContainerMemorySampler start(GenericContainer<?> container)
+    {
+        return new ContainerMemorySampler(container);
+    }
+
+    public long getPeakMemoryBytes()
+    {
+        return peakMemoryBytes.get();
+    }
+
+    /**
+     * Start a new measurement, e.g. between the steps of a benchmark.
+     *
+     * @return The peak memory usage since the sampler started or since the last reset.
+     */
+    public long resetPeakMemoryBytes()
+    {
+        return peakMemoryBytes.getAndSet(0);
+    }
+
+    @Override
+    public void close()
+    {
+        try
+        {
+            callback.close();
+        }
+        catch (IOException e)
+        {
+            // The stats stream ends on its own when the container stops.
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package org.alfresco.elasticsearch.benchmark;
+
+import static org.alfresco.tas.AlfrescoStackInitializer.searchEngineClient;
+import static org.alfresco.tas.SystemPropertyHelper.getSystemProperty;
+import static org.alfresco.utility.report.log.Step.STEP;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import org.alfresco.elasticsearch.utility.BenchmarkReport;
+import org.alfresco.tas.AlfrescoStackInitializer;
+import org.alfresco.utility.network.ServerHealth;
+
+/**
+ * Measures the cost of paging deep into a large result set. ElasticsearchLimitTests checks that the total hits limit works, this benchmark shows what paging and counting cost
+ * once there are far more results than a page.
+ * <p>
+ * The repository is seeded with -Dbenchmark.paging.documents (100000) small text documents, all of them matching the query. Every page of -Dbenchmark.paging.pageSize (100)
+ * results at every skipCount in -Dbenchmark.paging.skipCounts is requested -Dbenchmark.paging.warmup (5) times to warm up the caches, then -Dbenchmark.paging.requests (20)
+ * times with -Dbenchmark.paging.concurrency (1) requests in flight. This is repeated for every combination of:
+ * <ul>
+ * <li>the sort order: by relevance, or by -Dbenchmark.paging.sortField (cm:name);</li>
+ * <li>the total hits: counted exactly (trackTotalHitsLimit -1), or capped at -Dbenchmark.paging.totalHitsCap (10000).</li>
+ * </ul>
+ * Every row of target/benchmark-reports/deep-pagination.{csv,json} also holds the peak memory of the repository container, the peak heap of the search engine and the young
+ * garbage collections of the search engine during the measured requests. The pages the search engine refuses, e.g. past its result window, are reported as errors rather than
+ * failing the run, as they are the cliff this benchmark looks for.
+ */
+@ContextConfiguration(locations = "classpath:alfresco-elasticsearch-context.xml",
+        initializers = AlfrescoStackInitializer.class)
+@SuppressWarnings({"PMD.JUnit4TestShouldUseTestAnnotation", "PMD.JUnitTestsShouldIncludeAssert"}) // these are testng tests
+public class DeepPaginationBenchmark extends AbstractTestNGSpringContextTests
+{
+    private static final int SEED_CONCURRENCY = 32;
+    private static final String RELEVANCE = "relevance";
+
+    @Autowired
+    private ServerHealth serverHealth;
+
+    @BeforeClass(alwaysRun = true)
+    public void checkServer()
+    {
+        serverHealth.isServerReachable();
+        serverHealth.assertServerIsOnline();
+    }
+
+    @Test(groups = "benchmark")
+    public void measureDeepPagination() throws IOException, InterruptedException
+    {
+        final int documents = Integer.parseInt(getSystemProperty("benchmark.paging.documents", "100000"));
+        final int pageSize = Integer.parseInt(getSystemProperty("benchmark.paging.pageSize", "100"));
+        final int warmUpRequests = Integer.parseInt(getSystemProperty("benchmark.paging.warmup", "5"));
+        final int requests = Integer.parseInt(getSystemProperty("benchmark.paging.requests", "20"));
+        final int concurrency = Integer.parseInt(getSystemProperty("benchmark.paging.concurrency", "1"));
+        final int totalHitsCap = Integer.parseInt(getSystemProperty("benchmark.paging.totalHitsCap", "10000"));
+        final List<String> sortOrders = List.of(RELEVANCE, getSystemProperty("benchmark.paging.sortField", "cm:name"));
+        final int[] skipCounts = Arrays.stream(getSystemProperty("benchmark.paging.skipCounts", "0,100,1000,5000,9900,10000,20000,50000," + (documents - pageSize)).split(","))
+                .map(String::strip)
+                .mapToInt(Integer::parseInt)
+                .filter(skipCount -> skipCount >= 0 && skipCount < documents)
+                .toArray();
+        final URI repoBaseUri = URI.create("http://" + AlfrescoStackInitializer.alfresco.getHost() + ":" + AlfrescoStackInitializer.alfresco.getMappedPort(8080));
+        final String corpusFolder = "DeepPagination" + System.currentTimeMillis();
+        final String query;
+
+        STEP("Seed the repository with " + documents + " documents.");
+        try (LoadRepoHttpClient client = new LoadRepoHttpClient(repoBaseUri, SEED_CONCURRENCY))
+        {
+            final BulkIngestionDriver.Result seeded = new BulkIngestionDriver(client)
+                    .withDocuments(documents)
+                    .withConcurrency(SEED_CONCURRENCY)
+                    .withFolderTree(2, 10)
+                    .withSizes(1, 0, 1)
+                    .run(corpusFolder);
+            Assert.assertEquals(seeded.getFailures(), 0, "Some documents failed to upload: " + seeded.outcomes());
+            // The documents are in the home folder of the user, which isn't under User Homes for admin, so they're found by the id of their root folder.
+            query = "ANCESTOR:\"workspace://SpacesStore/" + seeded.rootFolderId() + "\" AND TYPE:'cm:content'";
+            waitUntilIndexed(client, query, documents, Duration.ofMinutes(Long.parseLong(getSystemProperty("benchmark.paging.indexTimeout.minutes", "60"))));
+        }
+
+        final BenchmarkReport report = new BenchmarkReport("deep-pagination");
+        try (LoadRepoHttpClient client = new LoadRepoHttpClient(repoBaseUri, concurrency);
+                ContainerMemorySampler repoMemory = ContainerMemorySampler.start(AlfrescoStackInitializer.alfresco))
+        {
+            final QueryLoadDriver driver = new QueryLoadDriver(client).withConcurrency(concurrency);
+            for (String sortOrder : sortOrders)
+            {
+                for (int trackTotalHitsLimit : new int[]{-1, totalHitsCap})
+                {
+                    for (int skipCount : skipCounts)
+                    {
+                        STEP("Request the page at %d sorted by %s with trackTotalHitsLimit=%d.".formatted(skipCount, sortOrder, trackTotalHitsLimit));
+                        final JsonObject body = page(query, sortOrder, trackTotalHitsLimit, skipCount, pageSize);
+                        final QueryLoadDriver.QueryCall call = searchClient -> searchClient.search(body);
+                        driver.run(call, warmUpRequests);
+
+                        repoMemory.resetPeakMemoryBytes();
+                        final QueryLoadDriver.Result result;
+                        final SearchEngineJvm searchEngineJvm;
+                        try (SearchEngineJvmSampler sampler = new SearchEngineJvmSampler())
+                        {
+                            result = driver.run(call, requests);
+                            searchEngineJvm = sampler.stop();
+                        }
+
+                        final Map<String, Object> row = new LinkedHashMap<>();
+                        row.put("sort", sortOrder);
+                        row.put("totalHits", trackTotalHitsLimit < 0 ? "exact" : "capped at " + trackTotalHitsLimit);
+                        row.put("skipCount", skipCount);
+                        row.put("pageSize", pageSize);
+                        row.put("concurrency", concurrency);
+                        row.put("requests", requests);
+                        row.putAll(result.toColumns(""));
+                        row.put("repoPeakMemoryMb", repoMemory.resetPeakMemoryBytes() / (1024 * 1024));
+                        row.put("searchPeakHeapMb", searchEngineJvm.peakHeapBytes() / (1024 * 1024));
+                        row.put("searchYoungGcCount", searchEngineJvm.youngGcCount());
+                        row.put("searchYoungGcMs", searchEngineJvm.youngGcMillis());
+                        report.addRow(row);
+                        STEP("Result: " + row);
+                    }
+                }
+            }
+        }
+        STEP("Deep pagination report written to " + report.write().toAbsolutePath());
+        report.getRows().stream()
+                .filter(row -> (int) row.get("skipCount") == 0)
+                .forEach(row -> Assert.assertEquals((long) row.get("errors"), 0L, "The first page failed: " + row));
+    }
+
+    private static JsonObject page(String query, String sortOrder, int trackTotalHitsLimit, int skipCount, int pageSize)
+    {
+        final JsonObject body = new JsonObject();
+        final JsonObject queryObject = new JsonObject();
+        queryObject.addProperty("language", "afts");
+        queryObject.addProperty("query", query);
+        body.add("query", queryObject);
+
+        final JsonObject paging = new JsonObject();
+        paging.addProperty("skipCount", skipCount);
+        paging.addProperty("maxItems", pageSize);
+        body.add("paging", paging);
+
+        final JsonObject limits = new JsonObject();
+        limits.addProperty("trackTotalHitsLimit", trackTotalHitsLimit);
+        body.add("limits", limits);
+
+        if (!RELEVANCE.equals(sortOrder))
+        {
+            final JsonObject sortByField = new JsonObject();
+            sortByField.addProperty("type", "FIELD");
+            sortByField.addProperty("field", sortOrder);
+            sortByField.addProperty("ascending", true);
+            final JsonArray sort = new JsonArray();
+            sort.add(sortByField);
+            body.add("sort", sort);
+        }
+        return body;
+    }
+
+    /** Poll the search API until every document is searchable. */
+    private static void waitUntilIndexed(LoadRepoHttpClient client, String query, int documents, Duration timeout) throws IOException, InterruptedException
+    {
+        final long start = System.nanoTime();
+        final long deadline = start + timeout.toNanos();
+        long indexed = -1;
+        while (System.nanoTime() < deadline)
+        {
+            indexed = client.count(query).totalItems();
+            if (indexed >= documents)
+            {
+                STEP("The documents were indexed in " + Duration.ofNanos(System.nanoTime() - start).toSeconds() + " s.");
+                return;
+            }
+            TimeUnit.SECONDS.sleep(5);
+        }
+        Assert.fail("Only " + indexed + " of the " + documents + " documents were indexed within " + timeout + ".");
+    }
+
+    /**
+     * The heap and the young garbage collections of the search engine, summed over its nodes.
+     *
+     * @param peakHeapBytes
+     *            The largest heap usage sampled.
+     * @param youngGcCount
+     *            The number of young collections.
+     * @param youngGcMillis
+     *            The time spent in young collections.
+     */
+    private record SearchEngineJvm(long peakHeapBytes, long youngGcCount, long youngGcMillis)
+    {
+        static SearchEngineJvm read() throws IOException
+        {
+            final JsonObject nodes = JsonParser.parseString(searchEngineClient.get("/_nodes/stats/jvm")).getAsJsonObject().getAsJsonObject("nodes");
+            long heapUsed = 0;
+            long youngGcCount = 0;
+            long youngGcMillis = 0;
+            for (Map.Entry<String, JsonElement> node : nodes.entrySet())
+            {
+                final JsonObject jvm = node.getValue().getAsJsonObject().getAsJsonObject("jvm");
+                heapUsed += jvm.getAsJsonObject("mem").get("heap_used_in_bytes").getAsLong();
+                final JsonObject young = jvm.getAsJsonObject("gc").getAsJsonObject("collectors").getAsJsonObject("young");
+                youngGcCount += young.get("collection_count").getAsLong();
+                youngGcMillis += young.get("collection_time_in_millis").getAsLong();
+            }
+            return new SearchEngineJvm(heapUsed, youngGcCount, youngGcMillis);
+        }
+    }
+
+    /**
+     * Samples the heap of the search engine every 250 ms, from a virtual thread, until stopped. The heap in use drops after every collection, so the peak is only indicative,
+     * the young collections show how much the requests allocated.
+     */
+    private static class SearchEngineJvmSampler implements AutoCloseable
+    {
+        private final SearchEngineJvm before;
+        private final AtomicLong peakHeapBytes = new AtomicLong();
+        private final Thread sampler;
+
+        SearchEngineJvmSampler() throws IOException
+        {
+            before = SearchEngineJvm.read();
+            peakHeapBytes.set(before.peakHeapBytes());
+            sampler = Thread.ofVirtual().start(() -> {
+                while (!Thread.currentThread().isInterrupted())
+                {
+                    try
+                    {
+                        TimeUnit.MILLISECONDS.sleep(250);
+                        peakHeapBytes.accumulateAndGet(SearchEngineJvm.read().peakHeapBytes(), Math::max);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        return;
+                    }
+                    catch (IOException | RuntimeException e)
+                    {
+                        // A missed sample only makes the peak less accurate.
+                    }
+                }
+            });
+        }
+
+        /** @return The peak heap and the collections since the sampler started. */
+        SearchEngineJvm stop() throws IOException, InterruptedException
+        {
+            close();
+            sampler.join();
+            final SearchEngineJvm after = SearchEngineJvm.read();
+            return new SearchEngineJvm(Math.max(peakHeapBytes.get(), after.peakHeapBytes()), after.youngGcCount() - before.youngGcCount(),
+                    after.youngGcMillis() - before.youngGcMillis());
+        }
+
+        @Override
+        public void close()
+        {
+            sampler.interrupt();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.alfresco.elasticsearch.benchmark;
+
+import static org.alfresco.tas.SystemPropertyHelper.getSystemProperty;
+import static org.alfresco.utility.report.log.Step.STEP;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import org.alfresco.elasticsearch.utility.BenchmarkReport;
+import org.alfresco.tas.AlfrescoStackInitializer;
+import org.alfresco.utility.network.ServerHealth;
+
+/**
+ * Measures how long uploaded documents take to become searchable. -Dbenchmark.lag.documents (1000) documents are uploaded with -Dbenchmark.lag.concurrency (16) concurrent
+ * uploads, while the search API is polled every -Dbenchmark.lag.pollIntervalMs (250) for up to -Dbenchmark.lag.timeout.minutes (10). The lag distributions are written to
+ * target/benchmark-reports/index-lag.{csv,json}.
+ */
+@ContextConfiguration(locations = "classpath:alfresco-elasticsearch-context.xml",
+        initializers = AlfrescoStackInitializer.class)
+@SuppressWarnings({"PMD.JUnit4TestShouldUseTestAnnotation", "PMD.JUnitTestsShouldIncludeAssert"}) // these are testng tests
+public class IndexLagBenchmark extends AbstractTestNGSpringContextTests
+{
+    @Autowired
+    private ServerHealth serverHealth;
+
+    @BeforeClass(alwaysRun = true)
+    public void checkServer()
+    {
+        serverHealth.isServerReachable();
+        serverHealth.assertServerIsOnline();
+    }
+
+    @Test(groups = "benchmark")
+    public void measureIndexLag() throws IOException, InterruptedException
+    {
+        final int concurrency = Integer.parseInt(getSystemProperty("benchmark.lag.concurrency", "16"));
+        final URI repoBaseUri = URI.create("http://" + AlfrescoStackInitializer.alfresco.getHost() + ":" + AlfrescoStackInitializer.alfresco.getMappedPort(8080));
+
+        final IndexLagMeter.Result result;
+        // One more connection than the uploads, for the poller.
+        try (LoadRepoHttpClient client = new LoadRepoHttpClient(repoBaseUri, concurrency + 1))
+        {
+            result = new IndexLagMeter(client)
+                    .withDocuments(Integer.parseInt(getSystemProperty("benchmark.lag.documents", "1000")))
+                    .withConcurrency(concurrency)
+                    .withPollInterval(Duration.ofMillis(Long.parseLong(getSystemProperty("benchmark.lag.pollIntervalMs", "250"))))
+                    .withTimeout(Duration.ofMinutes(Long.parseLong(getSystemProperty("benchmark.lag.timeout.minutes", "10"))))
+                    .measure("IndexLag" + System.currentTimeMillis());
+        }
+
+        final BenchmarkReport report = new BenchmarkReport("index-lag");
+        result.toRows().values().forEach(row -> {
+            report.addRow(row);
+            STEP("Result: " + row);
+        });
+        STEP("Index lag report written to " + report.write().toAbsolutePath());
+        Assert.assertTrue(result.uploadErrors().isEmpty(), "Some uploads failed: " + result.uploadErrors());
+        Assert.assertTrue(result.missing().values().stream().allMatch(missing -> missing == 0), "Some documents never became visible: " + result.missing());
+    }
+}
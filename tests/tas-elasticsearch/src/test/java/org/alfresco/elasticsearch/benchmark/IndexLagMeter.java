@@ -0,0 +1,324 @@
+package org.alfresco.elasticsearch.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.util.concurrent.AtomicLongMap;
+import org.HdrHistogram.Histogram;
+
+import org.alfresco.elasticsearch.utility.BenchmarkReport;
+
+/**
+ * Measures the time between a document being uploaded and it becoming visible to search, for every document of a batch uploaded under load.
+ * <p>
+ * Every document is stamped with the time its upload returned, i.e. when its transaction was committed. While the batch is being uploaded the search API is polled for the
+ * documents of the batch and the first time each one is returned is recorded. This is done through three channels, which split the lag into stages:
+ * <ul>
+ * <li>{@link Channel#METADATA}: an AFTS query on the name, which returns a document as soon as its metadata is indexed. This covers the event being sent through the broker
+ * and picked up by live indexing, and the metadata being indexed.</li>
+ * <li>{@link Channel#CONTENT}: an AFTS query on a word of the content, which only returns a document once its content was transformed to text and indexed. The difference
+ * with the metadata lag of the same document is reported as the content stage.</li>
+ * <li>{@link Channel#CMIS}: a CMIS full text query on the same word, for the lag seen by CMIS clients.</li>
+ * </ul>
+ * The resolution of the measurements is the poll interval plus the time taken by a poll.
+ */
+public class IndexLagMeter
+{
+    private static final int PAGE_SIZE = 1000;
+
+    /** The ways a document can be found. */
+    public enum Channel
+    {
+        METADATA, CONTENT, CMIS
+    }
+
+    private final LoadRepoHttpClient client;
+    private int documents = 1000;
+    private int concurrency = 16;
+    private Duration pollInterval = Duration.ofMillis(250);
+    private Duration timeout = Duration.ofMinutes(10);
+
+    /**
+     * @param client
+     *            The client for the uploads and the queries, its pool needs one connection more than the concurrency of the uploads.
+     */
+    public IndexLagMeter(LoadRepoHttpClient client)
+    {
+        this.client = client;
+    }
+
+    public IndexLagMeter withDocuments(int documents)
+    {
+        this.documents = documents;
+        return this;
+    }
+
+    public IndexLagMeter withConcurrency(int concurrency)
+    {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    public IndexLagMeter withPollInterval(Duration pollInterval)
+    {
+        this.pollInterval = pollInterval;
+        return this;
+    }
+
+    /**
+     * @param timeout
+     *            How long to wait for the last document to become visible through every channel.
+     */
+    public IndexLagMeter withTimeout(Duration timeout)
+    {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Upload the batch and measure the lag of every document.
+     *
+     * @param name
+     *            The name of the folder of the batch, also used as the prefix of the document names. Only letters and digits are allowed.
+     * @return The lag distribution of every channel.
+     */
+    public Result measure(String name) throws IOException, InterruptedException
+    {
+        final LoadRepoHttpClient.NodeResult folder = client.createFolder("-my-", name);
+        if (!folder.isSuccessful())
+        {
+            throw new IOException("Failed to create the folder `" + name + "`, HTTP status " + folder.status() + ".");
+        }
+
+        // A word which only appears in the content of this batch.
+        final String contentToken = "lag" + UUID.randomUUID().toString().replace("-", "").toLowerCase(Locale.ROOT);
+        final byte[] content = ("Index lag measurement " + contentToken + ".\n").getBytes(StandardCharsets.UTF_8);
+        final AtomicLongArray uploadedAt = new AtomicLongArray(documents);
+        final AtomicInteger finishedUploads = new AtomicInteger();
+        final Map<Channel, AtomicLongArray> visibleAt = new EnumMap<>(Channel.class);
+        for (Channel channel : Channel.values())
+        {
+            visibleAt.put(channel, new AtomicLongArray(documents));
+        }
+        final AtomicLongMap<String> uploadErrors = AtomicLongMap.create();
+        final Semaphore inFlight = new Semaphore(concurrency);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            final Future<?> poller = executor.submit(() -> {
+                poll(name, contentToken, uploadedAt, finishedUploads, visibleAt);
+                return null;
+            });
+            for (int i = 0; i < documents; i++)
+            {
+                inFlight.acquire();
+                final int index = i;
+                executor.execute(() -> {
+                    try
+                    {
+                        final LoadRepoHttpClient.NodeResult result = client.upload(folder.nodeId(), name + "-" + index + ".txt", "text/plain", content);
+                        if (result.isSuccessful())
+                        {
+                            uploadedAt.set(index, System.nanoTime());
+                        }
+                        else
+                        {
+                            uploadErrors.incrementAndGet("HTTP " + result.status());
+                        }
+                    }
+                    catch (IOException | RuntimeException e)
+                    {
+                        uploadErrors.incrementAndGet(e.getClass().getName());
+                    }
+                    finally
+                    {
+                        finishedUploads.incrementAndGet();
+                        inFlight.release();
+                    }
+                });
+            }
+            poller.get();
+        }
+        catch (ExecutionException e)
+        {
+            throw new IOException("Failed to poll for the documents.", e.getCause());
+        }
+
+        return toResult(uploadedAt, visibleAt, uploadErrors.asMap());
+    }
+
+    private void poll(String name, String contentToken, AtomicLongArray uploadedAt, AtomicInteger finishedUploads, Map<Channel, AtomicLongArray> visibleAt)
+            throws IOException, InterruptedException
+    {
+        final Map<Channel, String[]> queries = Map.of(
+                // The cm:name:* term ensures that the query hits the index rather than the db.
+                Channel.METADATA, new String[]{"afts", "cm:name:" + name + "-* AND cm:name:*"},
+                Channel.CONTENT, new String[]{"afts", "TEXT:" + contentToken},
+                Channel.CMIS, new String[]{"cmis", "SELECT * FROM cmis:document WHERE CONTAINS('" + contentToken + "')"});
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline)
+        {
+            // Read before polling, so that no upload can finish unnoticed after the last poll.
+            final boolean uploadsFinished = finishedUploads.get() == documents;
+            boolean complete = true;
+            for (Channel channel : Channel.values())
+            {
+                final AtomicLongArray seen = visibleAt.get(channel);
+                if (uploadsFinished && countPending(uploadedAt, seen) == 0)
+                {
+                    continue;
+                }
+                complete = false;
+                final String[] query = queries.get(channel);
+                for (int skip = 0;; skip += PAGE_SIZE)
+                {
+                    final LoadRepoHttpClient.SearchResult page = client.searchNames(query[0], query[1], skip, PAGE_SIZE, documentName -> {
+                        final int index = indexOf(name, documentName);
+                        if (index >= 0 && index < documents)
+                        {
+                            seen.compareAndSet(index, 0, System.nanoTime());
+                        }
+                    });
+                    if (!page.isSuccessful() || skip + PAGE_SIZE >= page.totalItems())
+                    {
+                        break;
+                    }
+                }
+            }
+            if (complete)
+            {
+                return;
+            }
+            TimeUnit.NANOSECONDS.sleep(pollInterval.toNanos());
+        }
+    }
+
+    private Result toResult(AtomicLongArray uploadedAt, Map<Channel, AtomicLongArray> visibleAt, Map<String, Long> uploadErrors)
+    {
+        final Map<String, Histogram> lags = new LinkedHashMap<>();
+        final Map<String, Long> missing = new LinkedHashMap<>();
+        for (Channel channel : Channel.values())
+        {
+            lags.put(channel.name().toLowerCase(Locale.ROOT), new Histogram(3));
+            missing.put(channel.name().toLowerCase(Locale.ROOT), 0L);
+        }
+        final Histogram contentStage = new Histogram(3);
+
+        for (int i = 0; i < documents; i++)
+        {
+            final long uploaded = uploadedAt.get(i);
+            if (uploaded == 0)
+            {
+                continue;
+            }
+            for (Channel channel : Channel.values())
+            {
+                final long visible = visibleAt.get(channel).get(i);
+                final String key = channel.name().toLowerCase(Locale.ROOT);
+                if (visible == 0)
+                {
+                    missing.merge(key, 1L, Long::sum);
+                }
+                else
+                {
+                    // A document can be seen before its upload returns, in which case it has no lag.
+                    lags.get(key).recordValue(TimeUnit.NANOSECONDS.toMicros(Math.max(0, visible - uploaded)));
+                }
+            }
+            final long metadataVisible = visibleAt.get(Channel.METADATA).get(i);
+            final long contentVisible = visibleAt.get(Channel.CONTENT).get(i);
+            if (metadataVisible != 0 && contentVisible != 0)
+            {
+                contentStage.recordValue(TimeUnit.NANOSECONDS.toMicros(Math.max(0, contentVisible - Math.max(uploaded, metadataVisible))));
+            }
+        }
+        lags.put("content-stage", contentStage);
+        return new Result(documents, lags, missing, Map.copyOf(uploadErrors));
+    }
+
+    private static int indexOf(String name, String documentName)
+    {
+        final int start = name.length() + 1;
+        final int end = documentName.lastIndexOf('.');
+        if (!documentName.startsWith(name + "-") || end <= start)
+        {
+            return -1;
+        }
+        try
+        {
+            return Integer.parseInt(documentName, start, end, 10);
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    /** @return The number of uploaded documents which haven't been seen yet. */
+    private static int countPending(AtomicLongArray uploadedAt, AtomicLongArray seen)
+    {
+        int count = 0;
+        for (int i = 0; i < uploadedAt.length(); i++)
+        {
+            if (uploadedAt.get(i) != 0 && seen.get(i) == 0)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The lag distribution of a batch.
+     *
+     * @param documents
+     *            The number of documents in the batch.
+     * @param lags
+     *            The lag of every channel, plus the content stage, in microseconds.
+     * @param missing
+     *            The number of uploaded documents which never became visible through each channel.
+     * @param uploadErrors
+     *            The number of failed uploads per HTTP status or exception class.
+     */
+    public record Result(int documents, Map<String, Histogram> lags, Map<String, Long> missing, Map<String, Long> uploadErrors)
+    {
+        /** @return One {@link BenchmarkReport} row per channel and stage. */
+        public Map<String, Map<String, Object>> toRows()
+        {
+            final Map<String, Map<String, Object>> rows = new LinkedHashMap<>();
+            lags.forEach((name, histogram) -> {
+                final Map<String, Object> row = new LinkedHashMap<>();
+                row.put("measure", name);
+                row.put("documents", documents);
+                row.put("visible", histogram.getTotalCount());
+                row.put("missing", missing.getOrDefault(name, 0L));
+                row.put("p50Ms", toMillis(histogram.getValueAtPercentile(50)));
+                row.put("p90Ms", toMillis(histogram.getValueAtPercentile(90)));
+                row.put("p99Ms", toMillis(histogram.getValueAtPercentile(99)));
+                row.put("maxMs", toMillis(histogram.getMaxValue()));
+                row.put("uploadErrors", uploadErrors.toString());
+                rows.put(name, row);
+            });
+            return rows;
+        }
+
+        private static double toMillis(long micros)
+        {
+            return Math.round(micros / 100.0) / 10.0;
+        }
+    }
+}
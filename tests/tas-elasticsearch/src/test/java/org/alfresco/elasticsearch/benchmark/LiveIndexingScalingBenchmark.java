@@ -0,0 +1,124 @@
+package org.alfresco.elasticsearch.benchmark;
+
+import static org.alfresco.tas.AlfrescoStackInitializer.getLiveIndexingReplicas;
+import static org.alfresco.tas.AlfrescoStackInitializer.scaleLiveIndexing;
+import static org.alfresco.tas.SystemPropertyHelper.getSystemProperty;
+import static org.alfresco.utility.report.log.Step.STEP;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import org.alfresco.elasticsearch.utility.BenchmarkReport;
+import org.alfresco.tas.AlfrescoStackInitializer;
+import org.alfresco.utility.network.ServerHealth;
+
+/**
+ * Measures how live indexing scales out. For every replica count (-Dbenchmark.liveindexing.replicas, 1,2,3 by default) live indexing is stopped, a backlog of documents
+ * (-Dbenchmark.liveindexing.burst, 2000 by default) is uploaded, then live indexing is scaled to the replica count and the time until all of them are searchable is recorded.
+ * <p>
+ * The drain time runs from the replicas being started to the last document being indexed. The time taken to start the replicas is reported next to it. Every replica after
+ * the first one is a set of worker containers (see {@link AlfrescoStackInitializer#scaleLiveIndexing(int)}), so the default replica counts start up to six of them.
+ */
+@ContextConfiguration(locations = "classpath:alfresco-elasticsearch-context.xml",
+        initializers = AlfrescoStackInitializer.class)
+@SuppressWarnings({"PMD.JUnit4TestShouldUseTestAnnotation", "PMD.JUnitTestsShouldIncludeAssert"}) // these are testng tests
+public class LiveIndexingScalingBenchmark extends AbstractTestNGSpringContextTests
+{
+    private static final Duration DRAIN_TIMEOUT = Duration.ofMinutes(Long.parseLong(getSystemProperty("benchmark.liveindexing.timeout.minutes", "20")));
+    private static final int INGEST_CONCURRENCY = 16;
+
+    @Autowired
+    private ServerHealth serverHealth;
+
+    private int initialReplicas;
+
+    @BeforeClass(alwaysRun = true)
+    public void dataPreparation()
+    {
+        serverHealth.isServerReachable();
+        serverHealth.assertServerIsOnline();
+
+        initialReplicas = getLiveIndexingReplicas();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void restoreReplicas()
+    {
+        scaleLiveIndexing(initialReplicas);
+    }
+
+    @Test(groups = "benchmark")
+    public void measureBacklogDrainTime() throws IOException, InterruptedException
+    {
+        final int burst = Integer.parseInt(getSystemProperty("benchmark.liveindexing.burst", "2000"));
+        final URI repoBaseUri = URI.create("http://" + AlfrescoStackInitializer.alfresco.getHost() + ":" + AlfrescoStackInitializer.alfresco.getMappedPort(8080));
+        final BenchmarkReport report = new BenchmarkReport("live-indexing-scaling");
+        Duration firstDrain = null;
+        try (LoadRepoHttpClient client = new LoadRepoHttpClient(repoBaseUri, INGEST_CONCURRENCY))
+        {
+            for (int replicas : Arrays.stream(getSystemProperty("benchmark.liveindexing.replicas", "1,2,3").split(",")).map(String::strip).mapToInt(Integer::parseInt).toArray())
+            {
+                STEP("Build a backlog of " + burst + " documents with live indexing stopped.");
+                scaleLiveIndexing(0);
+                final BulkIngestionDriver.Result ingested = new BulkIngestionDriver(client)
+                        .withDocuments(burst)
+                        .withConcurrency(INGEST_CONCURRENCY)
+                        .withFolderTree(1, 10)
+                        .withSizes(1, 0, 1)
+                        .run("Backlog" + replicas + "x" + System.currentTimeMillis());
+                Assert.assertEquals(ingested.getFailures(), 0, "Some documents of the backlog failed to upload: " + ingested.outcomes());
+
+                STEP("Drain the backlog with " + replicas + " live indexing replicas.");
+                final long start = System.nanoTime();
+                scaleLiveIndexing(replicas);
+                final long started = System.nanoTime();
+                waitUntilIndexed(client, ingested.rootFolderId(), burst);
+                final long drained = System.nanoTime();
+
+                final Duration drain = Duration.ofNanos(drained - started);
+                firstDrain = firstDrain == null ? drain : firstDrain;
+                final Map<String, Object> row = new LinkedHashMap<>();
+                row.put("replicas", replicas);
+                row.put("documents", burst);
+                row.put("ingestMs", ingested.duration().toMillis());
+                row.put("scaleUpMs", Duration.ofNanos(started - start).toMillis());
+                row.put("drainMs", drain.toMillis());
+                row.put("documentsPerSecond", Math.round(burst * 10_000.0 / Math.max(1, drain.toMillis())) / 10.0);
+                row.put("speedupOverFirst", Math.round(firstDrain.toMillis() * 100.0 / Math.max(1, drain.toMillis())) / 100.0);
+                report.addRow(row);
+                STEP("Result: " + row);
+            }
+        }
+        STEP("Live indexing scaling report written to " + report.write().toAbsolutePath());
+    }
+
+    private static void waitUntilIndexed(LoadRepoHttpClient client, String rootFolderId, int expected) throws IOException, InterruptedException
+    {
+        final String query = "ANCESTOR:\"workspace://SpacesStore/" + rootFolderId + "\" AND TYPE:'cm:content'";
+        final long deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        long indexed = 0;
+        while (System.nanoTime() < deadline)
+        {
+            indexed = client.count(query).totalItems();
+            if (indexed >= expected)
+            {
+                return;
+            }
+            TimeUnit.MILLISECONDS.sleep(250);
+        }
+        Assert.fail("Only " + indexed + " of " + expected + " documents were indexed within " + DRAIN_TIMEOUT);
+    }
+}
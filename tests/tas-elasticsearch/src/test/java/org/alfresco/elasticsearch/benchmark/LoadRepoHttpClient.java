@@ -0,0 +1,499 @@
+package org.alfresco.elasticsearch.benchmark;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.mime.HttpMultipartMode;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * A client for driving load against the search and node APIs of the repository from a single JVM.
+ * <p>
+ * Unlike the client used by the upgrade tests it keeps a pool of persistent connections, sized for the expected concurrency, and it reads only the fields it needs from the
+ * responses with a streaming parser instead of building a map of the whole body. The blocking methods are safe to call from thousands of virtual threads, the number of
+ * requests on the wire is bounded by the pool. The async methods run the blocking calls on virtual threads.
+ */
+public class LoadRepoHttpClient implements Closeable
+{
+    private static final int CONNECT_TIMEOUT_MS = 5_000;
+    private static final int SOCKET_TIMEOUT_MS = 30_000;
+    // Waiting for a pooled connection is part of the latency under load, so this is deliberately generous.
+    private static final int CONNECTION_REQUEST_TIMEOUT_MS = 60_000;
+
+    private final String authorization;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    private final ExecutorService asyncExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final URI searchApiUri;
+    private final URI nodesApiUri;
+    private final URI peopleApiUri;
+    private final URI coreApiUri;
+
+    /**
+     * @param repoBaseUri
+     *            The base URI of the repository, e.g. http://localhost:8080.
+     * @param maxConnections
+     *            The size of the connection pool, i.e. the number of requests on the wire at once.
+     */
+    public LoadRepoHttpClient(URI repoBaseUri, int maxConnections)
+    {
+        this(repoBaseUri, maxConnections, "admin", "admin");
+    }
+
+    /**
+     * @param repoBaseUri
+     *            The base URI of the repository, e.g. http://localhost:8080.
+     * @param maxConnections
+     *            The size of the connection pool, i.e. the number of requests on the wire at once.
+     * @param userName
+     *            The user every request is sent as.
+     * @param password
+     *            The password of the user.
+     */
+    public LoadRepoHttpClient(URI repoBaseUri, int maxConnections, String userName, String password)
+    {
+        authorization = "Basic " + Base64.getEncoder().encodeToString((userName + ":" + password).getBytes(StandardCharsets.UTF_8));
+        connectionManager = new PoolingHttpClientConnectionManager(5, TimeUnit.MINUTES);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        connectionManager.setValidateAfterInactivity(2_000);
+        connectionManager.setDefaultSocketConfig(SocketConfig.custom().setTcpNoDelay(true).setSoKeepAlive(true).build());
+
+        client = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .disableCookieManagement()
+                .disableAutomaticRetries()
+                .setDefaultRequestConfig(
+                        RequestConfig.copy(RequestConfig.DEFAULT)
+                                .setConnectTimeout(CONNECT_TIMEOUT_MS)
+                                .setSocketTimeout(SOCKET_TIMEOUT_MS)
+                                .setConnectionRequestTimeout(CONNECTION_REQUEST_TIMEOUT_MS)
+                                .setRedirectsEnabled(false)
+                                .build())
+                .build();
+
+        searchApiUri = repoBaseUri.resolve("/alfresco/api/-default-/public/search/versions/1/search");
+        nodesApiUri = repoBaseUri.resolve("/alfresco/api/-default-/public/alfresco/versions/1/nodes/");
+        peopleApiUri = repoBaseUri.resolve("/alfresco/api/-default-/public/alfresco/versions/1/people");
+        coreApiUri = repoBaseUri.resolve("/alfresco/api/-default-/public/alfresco/versions/1/");
+    }
+
+    /**
+     * Upload a document. The content isn't copied, so the same array can be shared by many uploads.
+     *
+     * @param parentNodeId
+     *            The id of the folder, or -my- for the home folder of the user.
+     * @param fileName
+     *            The name of the document, it is renamed automatically if it already exists.
+     * @param mimeType
+     *            The mime type of the content.
+     * @param content
+     *            The content of the document.
+     * @return The status of the response and the id of the created node.
+     */
+    public NodeResult upload(String parentNodeId, String fileName, String mimeType, byte[] content) throws IOException
+    {
+        final HttpPost request = new HttpPost(nodesApiUri.resolve(parentNodeId + "/children"));
+        request.setEntity(MultipartEntityBuilder.create()
+                .setMode(HttpMultipartMode.BROWSER_COMPATIBLE)
+                .addBinaryBody("filedata", content, ContentType.create(mimeType), fileName)
+                .addTextBody("autoRename", "true")
+                .build());
+        return createNode(request);
+    }
+
+    /**
+     * Create a folder.
+     *
+     * @param parentNodeId
+     *            The id of the parent folder, or -my- for the home folder of the user.
+     * @param name
+     *            The name of the folder.
+     * @return The status of the response and the id of the created folder.
+     */
+    public NodeResult createFolder(String parentNodeId, String name) throws IOException
+    {
+        final JsonObject body = new JsonObject();
+        body.addProperty("name", name);
+        body.addProperty("nodeType", "cm:folder");
+        final HttpPost request = new HttpPost(nodesApiUri.resolve(parentNodeId + "/children"));
+        request.setEntity(new StringEntity(body.toString(), ContentType.APPLICATION_JSON));
+        return createNode(request);
+    }
+
+    /**
+     * Run an AFTS query.
+     *
+     * @param query
+     *            The query.
+     * @return The status of the response and the total number of results.
+     */
+    public SearchResult search(String query) throws IOException
+    {
+        final JsonObject body = new JsonObject();
+        final JsonObject queryObject = new JsonObject();
+        queryObject.addProperty("language", "afts");
+        queryObject.addProperty("query", query);
+        body.add("query", queryObject);
+        return search(body);
+    }
+
+    /**
+     * Count the results of an AFTS query exactly. The total of a plain search stops at the default total hits limit of 10000.
+     *
+     * @param query
+     *            The query.
+     * @return The status of the response and the total number of results.
+     */
+    public SearchResult count(String query) throws IOException
+    {
+        final JsonObject body = new JsonObject();
+        final JsonObject queryObject = new JsonObject();
+        queryObject.addProperty("language", "afts");
+        queryObject.addProperty("query", query);
+        body.add("query", queryObject);
+        final JsonObject paging = new JsonObject();
+        paging.addProperty("maxItems", 1);
+        body.add("paging", paging);
+        final JsonObject limits = new JsonObject();
+        limits.addProperty("trackTotalHitsLimit", -1);
+        body.add("limits", limits);
+        return search(body);
+    }
+
+    /**
+     * Send a request to the search API, e.g. with facets or a sort order.
+     *
+     * @param body
+     *            The body of the request.
+     * @return The status of the response and the total number of results.
+     */
+    public SearchResult search(JsonObject body) throws IOException
+    {
+        final HttpPost request = new HttpPost(searchApiUri);
+        request.setEntity(new StringEntity(body.toString(), ContentType.APPLICATION_JSON));
+        return execute(request, (status, reader) -> {
+            final String totalItems = reader == null ? null : readPath(reader, "list", "pagination", "totalItems");
+            return new SearchResult(status, totalItems == null ? -1 : Long.parseLong(totalItems));
+        });
+    }
+
+    /**
+     * Run a query and stream the names of the nodes in a page of results.
+     *
+     * @param language
+     *            The query language, afts or cmis.
+     * @param query
+     *            The query.
+     * @param skipCount
+     *            The number of results to skip.
+     * @param maxItems
+     *            The size of the page.
+     * @param names
+     *            Called with the name of every node in the page.
+     * @return The status of the response and the total number of results.
+     */
+    public SearchResult searchNames(String language, String query, int skipCount, int maxItems, Consumer<String> names) throws IOException
+    {
+        final JsonObject body = new JsonObject();
+        final JsonObject queryObject = new JsonObject();
+        queryObject.addProperty("language", language);
+        queryObject.addProperty("query", query);
+        body.add("query", queryObject);
+        final JsonObject paging = new JsonObject();
+        paging.addProperty("skipCount", skipCount);
+        paging.addProperty("maxItems", maxItems);
+        body.add("paging", paging);
+        final JsonArray fields = new JsonArray();
+        fields.add("name");
+        body.add("fields", fields);
+
+        final HttpPost request = new HttpPost(searchApiUri);
+        request.setEntity(new StringEntity(body.toString(), ContentType.APPLICATION_JSON));
+        return execute(request, (status, reader) -> reader == null ? new SearchResult(status, -1) : new SearchResult(status, readSearchPage(reader, names)));
+    }
+
+    /**
+     * Read a list from the core API, e.g. the categories with their counts, which the repository computes with the search engine.
+     *
+     * @param apiPath
+     *            The path and the query string of the list, relative to the core API, e.g. categories/-root-/subcategories?include=count.
+     * @return The status of the response and the total number of items of the list.
+     */
+    public SearchResult list(String apiPath) throws IOException
+    {
+        return execute(new HttpGet(coreApiUri.resolve(apiPath)), (status, reader) -> {
+            final String totalItems = reader == null ? null : readPath(reader, "list", "pagination", "totalItems");
+            return new SearchResult(status, totalItems == null ? -1 : Long.parseLong(totalItems));
+        });
+    }
+
+    /**
+     * Create a user. The client has to be sent as an administrator.
+     *
+     * @return The status of the response and the id of the user, a 409 status means the user already exists.
+     */
+    public NodeResult createPerson(String userName, String password) throws IOException
+    {
+        final JsonObject body = new JsonObject();
+        body.addProperty("id", userName);
+        body.addProperty("firstName", userName);
+        body.addProperty("email", userName + "@example.com");
+        body.addProperty("password", password);
+        final HttpPost request = new HttpPost(peopleApiUri);
+        request.setEntity(new StringEntity(body.toString(), ContentType.APPLICATION_JSON));
+        return createNode(request);
+    }
+
+    public CompletableFuture<NodeResult> uploadAsync(String parentNodeId, String fileName, String mimeType, byte[] content)
+    {
+        return async(() -> upload(parentNodeId, fileName, mimeType, content));
+    }
+
+    public CompletableFuture<SearchResult> searchAsync(String query)
+    {
+        return async(() -> search(query));
+    }
+
+    /** @return The number of connections in use, idle and waited for. */
+    public PoolStats getPoolStats()
+    {
+        return connectionManager.getTotalStats();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        asyncExecutor.shutdownNow();
+        client.close();
+    }
+
+    private NodeResult createNode(HttpPost request) throws IOException
+    {
+        return execute(request, (status, reader) -> new NodeResult(status, reader == null ? null : readPath(reader, "entry", "id")));
+    }
+
+    private <T> T execute(HttpUriRequest request, ResponseHandler<T> handler) throws IOException
+    {
+        request.setHeader(HttpHeaders.AUTHORIZATION, authorization);
+        try (CloseableHttpResponse response = client.execute(request))
+        {
+            final int status = response.getStatusLine().getStatusCode();
+            final HttpEntity entity = response.getEntity();
+            try
+            {
+                if (entity == null || status >= 300)
+                {
+                    return handler.handle(status, null);
+                }
+                return handler.handle(status, new JsonReader(new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8)));
+            }
+            finally
+            {
+                // Whatever wasn't read has to be drained for the connection to be reused.
+                EntityUtils.consume(entity);
+            }
+        }
+    }
+
+    private <T> CompletableFuture<T> async(Callable<T> call)
+    {
+        return CompletableFuture.supplyAsync(() -> {
+            try
+            {
+                return call.call();
+            }
+            catch (Exception e)
+            {
+                throw new CompletionException(e);
+            }
+        }, asyncExecutor);
+    }
+
+    /** @return The total number of results, the names of the nodes in the page are passed to the consumer. */
+    private static long readSearchPage(JsonReader reader, Consumer<String> names) throws IOException
+    {
+        long totalItems = -1;
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            if (!"list".equals(reader.nextName()))
+            {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext())
+            {
+                switch (reader.nextName())
+                {
+                case "pagination" -> {
+                    final String total = readField(reader, "totalItems");
+                    totalItems = total == null ? -1 : Long.parseLong(total);
+                }
+                case "entries" -> {
+                    reader.beginArray();
+                    while (reader.hasNext())
+                    {
+                        String name = null;
+                        reader.beginObject();
+                        while (reader.hasNext())
+                        {
+                            if ("entry".equals(reader.nextName()))
+                            {
+                                name = readField(reader, "name");
+                            }
+                            else
+                            {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                        if (name != null)
+                        {
+                            names.accept(name);
+                        }
+                    }
+                    reader.endArray();
+                }
+                default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endObject();
+        return totalItems;
+    }
+
+    /** Read an object and return the value of one of its fields. */
+    private static String readField(JsonReader reader, String field) throws IOException
+    {
+        String value = null;
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            if (field.equals(reader.nextName()) && (reader.peek() == JsonToken.STRING || reader.peek() == JsonToken.NUMBER || reader.peek() == JsonToken.BOOLEAN))
+            {
+                value = reader.nextString();
+            }
+            else
+            {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return value;
+    }
+
+    /**
+     * Read the value at the given path of field names, skipping everything else and without reading past it.
+     *
+     * @return The value as a string, or null if there is no such value.
+     */
+    private static String readPath(JsonReader reader, String... path) throws IOException
+    {
+        for (String field : path)
+        {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT)
+            {
+                return null;
+            }
+            reader.beginObject();
+            boolean found = false;
+            while (!found && reader.hasNext())
+            {
+                if (field.equals(reader.nextName()))
+                {
+                    found = true;
+                }
+                else
+                {
+                    reader.skipValue();
+                }
+            }
+            if (!found)
+            {
+                return null;
+            }
+        }
+        return switch (reader.peek())
+        {
+        case STRING, NUMBER, BOOLEAN -> reader.nextString();
+        default -> null;
+        };
+    }
+
+    @FunctionalInterface
+    private interface ResponseHandler<T>
+    {
+        /**
+         * @param reader
+         *            The body of a successful response, or null for an error.
+         */
+        T handle(int status, JsonReader reader) throws IOException;
+    }
+
+    /**
+     * The outcome of creating a node.
+     *
+     * @param status
+     *            The HTTP status of the response.
+     * @param nodeId
+     *            The id of the created node, or null if it wasn't created.
+     */
+    public record NodeResult(int status, String nodeId)
+    {
+        public boolean isSuccessful()
+        {
+            return status == 201 && nodeId != null;
+        }
+    }
+
+    /**
+     * The outcome of a query.
+     *
+     * @param status
+     *            The HTTP status of the response.
+     * @param totalItems
+     *            The total number of results, or -1 if the query failed.
+     */
+    public record SearchResult(int status, long totalItems)
+    {
+        public boolean isSuccessful()
+        {
+            return status == 200 && totalItems >= 0;
+        }
+    }
+}
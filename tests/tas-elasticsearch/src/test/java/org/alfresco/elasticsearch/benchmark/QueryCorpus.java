@@ -0,0 +1,87 @@
+package org.alfresco.elasticsearch.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * The classes of queries covered by the functional search tests (proximity, boosting, templates, highlighting, tokenisation, ISUNSET, PATH, CMIS and category counts),
+ * rewritten against the documents uploaded by {@link BulkIngestionDriver}, whose text content is made of a small vocabulary and whose names are doc-&lt;n&gt;.&lt;extension&gt;.
+ */
+public final class QueryCorpus
+{
+    /**
+     * A class of queries.
+     *
+     * @param name
+     *            The name of the class in the reports.
+     * @param call
+     *            The request of the class.
+     */
+    public record QueryClass(String name, QueryLoadDriver.QueryCall call)
+    {}
+
+    private QueryCorpus()
+    {}
+
+    /**
+     * @param corpusFolder
+     *            The unique name of the root folder of the documents.
+     * @return One query per class, in the order of the functional tests.
+     */
+    public static List<QueryClass> queryClasses(String corpusFolder)
+    {
+        final List<QueryClass> classes = new ArrayList<>();
+        classes.add(afts("proximity", "TEXT:(contract *(2) invoice)"));
+        classes.add(afts("boosted", "TYPE:('cm:content'^2 OR 'cm:folder'^0.5) AND (cm:name:doc^3.5 OR TEXT:contract^0.05)"));
+
+        final JsonObject template = body("afts", "TYPE:'cm:content' AND _NODE:contract");
+        final JsonObject nodeTemplate = new JsonObject();
+        nodeTemplate.addProperty("name", "_NODE");
+        nodeTemplate.addProperty("template", "%(cm:name TEXT)");
+        final JsonArray templates = new JsonArray();
+        templates.add(nodeTemplate);
+        template.add("templates", templates);
+        classes.add(search("template", template));
+
+        final JsonObject highlighting = body("afts", "TEXT:contract");
+        final JsonObject contentField = new JsonObject();
+        contentField.addProperty("field", "cm:content");
+        final JsonArray fields = new JsonArray();
+        fields.add(contentField);
+        final JsonObject highlight = new JsonObject();
+        highlight.add("fields", fields);
+        highlighting.add("highlight", highlight);
+        classes.add(search("highlighting", highlighting));
+
+        classes.add(afts("tokenisation", "name:\"doc-1.txt\""));
+        classes.add(afts("isUnset", "TYPE:'cm:content' AND ISUNSET:\"cm:title\""));
+        // The name of the corpus folder is unique, so the path doesn't depend on where the home folder of the user is.
+        classes.add(afts("path", "PATH:\"//cm:" + corpusFolder + "//*\" AND TYPE:'cm:content'"));
+        classes.add(search("cmis", body("cmis", "SELECT * FROM cmis:document WHERE CONTAINS('contract')")));
+        classes.add(new QueryClass("categoryCount", client -> client.list("categories/-root-/subcategories?include=count")));
+        return classes;
+    }
+
+    private static QueryClass afts(String name, String query)
+    {
+        return search(name, body("afts", query));
+    }
+
+    private static QueryClass search(String name, JsonObject body)
+    {
+        return new QueryClass(name, client -> client.search(body));
+    }
+
+    private static JsonObject body(String language, String query)
+    {
+        final JsonObject queryObject = new JsonObject();
+        queryObject.addProperty("language", language);
+        queryObject.addProperty("query", query);
+        final JsonObject body = new JsonObject();
+        body.add("query", queryObject);
+        return body;
+    }
+}
@@ -0,0 +1,117 @@
+package org.alfresco.elasticsearch.benchmark;
+
+import static org.alfresco.tas.SystemPropertyHelper.getSystemProperty;
+import static org.alfresco.utility.report.log.Step.STEP;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import org.alfresco.elasticsearch.utility.BenchmarkReport;
+import org.alfresco.tas.AlfrescoStackInitializer;
+import org.alfresco.utility.network.ServerHealth;
+
+/**
+ * Measures the latency and the throughput of every class of queries of {@link QueryCorpus} over a seeded corpus of -Dbenchmark.query.documents (5000) text documents.
+ * <p>
+ * Once the corpus is searchable, every class runs at every concurrency level in -Dbenchmark.query.concurrency (1,8,32 by default): -Dbenchmark.query.warmup (100) requests to
+ * warm up the caches, then -Dbenchmark.query.requests (500) measured requests. The corpus has to be indexed within -Dbenchmark.query.indexTimeout.minutes (10). The results are
+ * written to target/benchmark-reports/query-latency.{csv,json}, and the run fails if any measured request fails.
+ */
+@ContextConfiguration(locations = "classpath:alfresco-elasticsearch-context.xml",
+        initializers = AlfrescoStackInitializer.class)
+@SuppressWarnings({"PMD.JUnit4TestShouldUseTestAnnotation", "PMD.JUnitTestsShouldIncludeAssert"}) // these are testng tests
+public class QueryLatencyBenchmark extends AbstractTestNGSpringContextTests
+{
+    private static final int SEED_CONCURRENCY = 16;
+
+    @Autowired
+    private ServerHealth serverHealth;
+
+    @BeforeClass(alwaysRun = true)
+    public void checkServer()
+    {
+        serverHealth.isServerReachable();
+        serverHealth.assertServerIsOnline();
+    }
+
+    @Test(groups = "benchmark")
+    public void measureQueryLatency() throws IOException, InterruptedException
+    {
+        final int documents = Integer.parseInt(getSystemProperty("benchmark.query.documents", "5000"));
+        final int warmUpRequests = Integer.parseInt(getSystemProperty("benchmark.query.warmup", "100"));
+        final int requests = Integer.parseInt(getSystemProperty("benchmark.query.requests", "500"));
+        final int[] concurrencyLevels = Arrays.stream(getSystemProperty("benchmark.query.concurrency", "1,8,32").split(",")).map(String::strip).mapToInt(Integer::parseInt).toArray();
+        final URI repoBaseUri = URI.create("http://" + AlfrescoStackInitializer.alfresco.getHost() + ":" + AlfrescoStackInitializer.alfresco.getMappedPort(8080));
+        final String corpusFolder = "QueryCorpus" + System.currentTimeMillis();
+
+        STEP("Seed the corpus with " + documents + " documents.");
+        try (LoadRepoHttpClient client = new LoadRepoHttpClient(repoBaseUri, SEED_CONCURRENCY))
+        {
+            final BulkIngestionDriver.Result seeded = new BulkIngestionDriver(client)
+                    .withDocuments(documents)
+                    .withConcurrency(SEED_CONCURRENCY)
+                    .withMimeTypes("text/plain:3,text/html:1")
+                    .withSizes(8, 0.5, 256)
+                    .run(corpusFolder);
+            Assert.assertEquals(seeded.getFailures(), 0, "Some documents of the corpus failed to upload: " + seeded.outcomes());
+            waitUntilIndexed(client, seeded.rootFolderId(), documents, Duration.ofMinutes(Long.parseLong(getSystemProperty("benchmark.query.indexTimeout.minutes", "10"))));
+        }
+
+        final BenchmarkReport report = new BenchmarkReport("query-latency");
+        for (int concurrency : concurrencyLevels)
+        {
+            try (LoadRepoHttpClient client = new LoadRepoHttpClient(repoBaseUri, concurrency))
+            {
+                final QueryLoadDriver driver = new QueryLoadDriver(client).withConcurrency(concurrency);
+                for (QueryCorpus.QueryClass queryClass : QueryCorpus.queryClasses(corpusFolder))
+                {
+                    STEP("Run the " + queryClass.name() + " queries with " + concurrency + " concurrent requests.");
+                    driver.run(queryClass.call(), warmUpRequests);
+                    final QueryLoadDriver.Result result = driver.run(queryClass.call(), requests);
+
+                    final Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("queryClass", queryClass.name());
+                    row.put("concurrency", concurrency);
+                    row.put("requests", requests);
+                    row.putAll(result.toColumns(""));
+                    report.addRow(row);
+                    STEP("Result: " + row);
+                }
+            }
+        }
+        STEP("Query latency report written to " + report.write().toAbsolutePath());
+        report.getRows().forEach(row -> Assert.assertEquals((long) row.get("errors"), 0L, "Some queries failed: " + row));
+    }
+
+    /** Poll the search API until every document of the corpus is searchable. */
+    private static void waitUntilIndexed(LoadRepoHttpClient client, String corpusFolderId, int documents, Duration timeout) throws IOException, InterruptedException
+    {
+        // The corpus is in the home folder of the user, which isn't under User Homes for admin, so it's found by the id of its root folder.
+        final String query = "ANCESTOR:\"workspace://SpacesStore/" + corpusFolderId + "\" AND TYPE:'cm:content'";
+        final long start = System.nanoTime();
+        final long deadline = start + timeout.toNanos();
+        long indexed = -1;
+        while (System.nanoTime() < deadline)
+        {
+            indexed = client.count(query).totalItems();
+            if (indexed >= documents)
+            {
+                STEP("The corpus was indexed in " + Duration.ofNanos(System.nanoTime() - start).toSeconds() + " s.");
+                return;
+            }
+            Thread.sleep(1000);
+        }
+        Assert.fail("Only " + indexed + " of the " + documents + " documents of the corpus were indexed within " + timeout + ".");
+    }
+}
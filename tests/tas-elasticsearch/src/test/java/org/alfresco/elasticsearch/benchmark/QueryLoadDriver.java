@@ -0,0 +1,151 @@
+package org.alfresco.elasticsearch.benchmark;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import org.alfresco.elasticsearch.utility.BenchmarkReport;
+
+/**
+ * Sends the same query a fixed number of times with a fixed number of queries in flight, and measures the latency and the throughput.
+ */
+public class QueryLoadDriver
+{
+    /** A query, sent through the client given to the driver. */
+    @FunctionalInterface
+    public interface QueryCall
+    {
+        LoadRepoHttpClient.SearchResult send(LoadRepoHttpClient client) throws IOException;
+    }
+
+    private final LoadRepoHttpClient client;
+    private int concurrency = 8;
+
+    /**
+     * @param client
+     *            The client to send the queries with, its pool should have at least as many connections as the concurrency of the driver.
+     */
+    public QueryLoadDriver(LoadRepoHttpClient client)
+    {
+        this.client = client;
+    }
+
+    public QueryLoadDriver withConcurrency(int concurrency)
+    {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Send the query.
+     *
+     * @param query
+     *            The query.
+     * @param requests
+     *            The number of times to send it.
+     * @return The measurements.
+     */
+    public Result run(QueryCall query, int requests) throws InterruptedException
+    {
+        final Recorder latencies = new Recorder(3);
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong totalItems = new AtomicLong(-1);
+        final Semaphore inFlight = new Semaphore(concurrency);
+
+        final long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for (int i = 0; i < requests; i++)
+            {
+                inFlight.acquire();
+                executor.execute(() -> {
+                    final long sent = System.nanoTime();
+                    try
+                    {
+                        final LoadRepoHttpClient.SearchResult result = query.send(client);
+                        if (result.isSuccessful())
+                        {
+                            totalItems.set(result.totalItems());
+                        }
+                        else
+                        {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    catch (IOException | RuntimeException e)
+                    {
+                        errors.incrementAndGet();
+                    }
+                    finally
+                    {
+                        latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sent));
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        return new Result(requests, concurrency, errors.get(), totalItems.get(), Duration.ofNanos(System.nanoTime() - start), latencies.getIntervalHistogram());
+    }
+
+    /**
+     * The measurements of a query.
+     *
+     * @param requests
+     *            The number of requests sent.
+     * @param concurrency
+     *            The number of requests in flight at once.
+     * @param errors
+     *            The number of failed requests.
+     * @param totalItems
+     *            The number of results of the last successful request, or -1 if none succeeded.
+     * @param duration
+     *            The time taken by all the requests.
+     * @param latencies
+     *            The latencies of the requests, in microseconds.
+     */
+    public record Result(int requests, int concurrency, long errors, long totalItems, Duration duration, Histogram latencies)
+    {
+        public double getRequestsPerSecond()
+        {
+            return duration.isZero() ? 0 : requests * 1000.0 / duration.toMillis();
+        }
+
+        /**
+         * @param prefix
+         *            The prefix of the column names, e.g. the name of an environment, or an empty string.
+         * @return The measurements as columns of a {@link BenchmarkReport} row.
+         */
+        public Map<String, Object> toColumns(String prefix)
+        {
+            final Map<String, Object> columns = new LinkedHashMap<>();
+            columns.put(column(prefix, "p50Ms"), toMillis(latencies.getValueAtPercentile(50)));
+            columns.put(column(prefix, "p90Ms"), toMillis(latencies.getValueAtPercentile(90)));
+            columns.put(column(prefix, "p99Ms"), toMillis(latencies.getValueAtPercentile(99)));
+            columns.put(column(prefix, "p999Ms"), toMillis(latencies.getValueAtPercentile(99.9)));
+            columns.put(column(prefix, "maxMs"), toMillis(latencies.getMaxValue()));
+            columns.put(column(prefix, "requestsPerSecond"), Math.round(getRequestsPerSecond() * 10) / 10.0);
+            columns.put(column(prefix, "errors"), errors);
+            columns.put(column(prefix, "totalItems"), totalItems);
+            return columns;
+        }
+
+        private static String column(String prefix, String name)
+        {
+            return prefix.isEmpty() ? name : prefix + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        }
+
+        private static double toMillis(long micros)
+        {
+            return Math.round(micros / 100.0) / 10.0;
+        }
+    }
+}
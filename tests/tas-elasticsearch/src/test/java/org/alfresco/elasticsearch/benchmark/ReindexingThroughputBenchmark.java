@@ -0,0 +1,249 @@
+package org.alfresco.elasticsearch.benchmark;
+
+import static org.alfresco.tas.AlfrescoStackInitializer.CUSTOM_ALFRESCO_INDEX;
+import static org.alfresco.tas.AlfrescoStackInitializer.createReindexingContainer;
+import static org.alfresco.tas.AlfrescoStackInitializer.searchEngineClient;
+import static org.alfresco.tas.SystemPropertyHelper.getSystemProperty;
+import static org.alfresco.utility.report.log.Step.STEP;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.model.Frame;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.GenericContainer;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import org.alfresco.elasticsearch.utility.BenchmarkReport;
+import org.alfresco.tas.AlfrescoStackInitializer;
+import org.alfresco.utility.network.ServerHealth;
+
+/**
+ * Measures the throughput of the reindexer for every combination of its tuning parameters.
+ * <p>
+ * The grid is configured with comma separated lists: -Dbenchmark.reindex.jobs (reindexByIds,reindexByDate), -Dbenchmark.reindex.batchSizes (100,500),
+ * -Dbenchmark.reindex.threads (2,4) and -Dbenchmark.reindex.pathIndexing (false,true). The repository is seeded with -Dbenchmark.seed.documents (20000) documents on top of the
+ * bootstrapped nodes. Every run starts from an empty index, which is reindexed in full once the grid is done, and the results are written to
+ * target/benchmark-reports/reindexing-throughput.{csv,json}.
+ * <p>
+ * The throughput is measured over the job itself, from the reindexer logging its startup to its last log line. The time taken by the whole container, including the startup of
+ * its JVM, is reported next to it.
+ */
+@ContextConfiguration(locations = "classpath:alfresco-elasticsearch-context.xml",
+        initializers = AlfrescoStackInitializer.class)
+@SuppressWarnings({"PMD.JUnit4TestShouldUseTestAnnotation", "PMD.JUnitTestsShouldIncludeAssert"}) // these are testng tests
+public class ReindexingThroughputBenchmark extends AbstractTestNGSpringContextTests
+{
+    private static final Duration REINDEX_TIMEOUT = Duration.ofMinutes(Long.parseLong(getSystemProperty("benchmark.reindex.timeout.minutes", "30")));
+    private static final int SEED_CONCURRENCY = 32;
+    /** Logged by Spring Boot once the reindexer has started, right before it runs its job. */
+    private static final Pattern STARTED_LOG_LINE = Pattern.compile(".*Started \\S+ in .* seconds.*");
+
+    @Autowired
+    private ServerHealth serverHealth;
+
+    @BeforeClass(alwaysRun = true)
+    public void dataPreparation() throws IOException, InterruptedException
+    {
+        serverHealth.isServerReachable();
+        serverHealth.assertServerIsOnline();
+
+        final int documents = Integer.parseInt(getSystemProperty("benchmark.seed.documents", "20000"));
+        STEP("Seed the repository with " + documents + " documents.");
+        final URI repoBaseUri = URI.create("http://" + AlfrescoStackInitializer.alfresco.getHost() + ":" + AlfrescoStackInitializer.alfresco.getMappedPort(8080));
+        try (LoadRepoHttpClient client = new LoadRepoHttpClient(repoBaseUri, SEED_CONCURRENCY))
+        {
+            final BulkIngestionDriver.Result seeded = new BulkIngestionDriver(client)
+                    .withDocuments(documents)
+                    .withConcurrency(SEED_CONCURRENCY)
+                    .withFolderTree(2, 10)
+                    .withSizes(1, 0, 1)
+                    .run("ReindexingThroughput" + System.currentTimeMillis());
+            Assert.assertEquals(seeded.getFailures(), 0, "Some documents failed to upload: " + seeded.outcomes());
+        }
+    }
+
+    @Test(groups = "benchmark")
+    public void measureReindexingThroughput() throws IOException, InterruptedException
+    {
+        final BenchmarkReport report = new BenchmarkReport("reindexing-throughput");
+        try
+        {
+            for (String job : list("benchmark.reindex.jobs", "reindexByIds,reindexByDate"))
+            {
+                for (String batchSize : list("benchmark.reindex.batchSizes", "100,500"))
+                {
+                    for (String threads : list("benchmark.reindex.threads", "2,4"))
+                    {
+                        for (String pathIndexing : list("benchmark.reindex.pathIndexing", "false,true"))
+                        {
+                            report.addRow(measure(job, batchSize, threads, pathIndexing));
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            // Every run empties the shared index, so leave it complete for the tests running after the benchmark, even if a run failed.
+            STEP("Restore the index.");
+            AlfrescoStackInitializer.reindexEverythingWithoutSnapshot();
+        }
+        STEP("Reindexing throughput report written to " + report.write().toAbsolutePath());
+    }
+
+    private Map<String, Object> measure(String job, String batchSize, String threads, String pathIndexing) throws IOException, InterruptedException
+    {
+        STEP("Reindex with job=%s, batchSize=%s, threads=%s, pathIndexing=%s.".formatted(job, batchSize, threads, pathIndexing));
+        emptyIndex();
+        final long rejectionsBefore = getWriteRejections();
+
+        final Map<String, String> env = new LinkedHashMap<>(Map.of(
+                "ALFRESCO_REINDEX_JOB_NAME", job,
+                "ALFRESCO_REINDEX_BATCHSIZE", batchSize,
+                "ALFRESCO_REINDEX_CONCURRENTPROCESSORS", threads,
+                "ALFRESCO_REINDEX_PATHINDEXINGENABLED", pathIndexing));
+        if ("reindexByIds".equals(job))
+        {
+            env.put("ALFRESCO_REINDEX_FROM_ID", "0");
+            env.put("ALFRESCO_REINDEX_TO_ID", "1000000000");
+        }
+
+        final long exitCode;
+        final long peakMemoryBytes;
+        final Duration jobDuration;
+        final long start = System.nanoTime();
+        try (GenericContainer<?> reindexer = createReindexingContainer(env))
+        {
+            reindexer.start();
+            try (ContainerMemorySampler memorySampler = ContainerMemorySampler.start(reindexer))
+            {
+                waitForExit(reindexer);
+                peakMemoryBytes = memorySampler.getPeakMemoryBytes();
+            }
+            final Long containerExitCode = reindexer.getCurrentContainerInfo().getState().getExitCodeLong();
+            exitCode = containerExitCode == null ? -1 : containerExitCode;
+            jobDuration = getJobDuration(reindexer);
+        }
+        final Duration containerDuration = Duration.ofNanos(System.nanoTime() - start);
+        Assert.assertEquals(exitCode, 0L, "The reindexer failed with job=%s, batchSize=%s, threads=%s, pathIndexing=%s.".formatted(job, batchSize, threads, pathIndexing));
+        Assert.assertNotNull(jobDuration, "The reindexer didn't log its startup, so the time taken by its job is unknown.");
+
+        final long documents = getDocumentCount();
+        final Map<String, Object> row = new LinkedHashMap<>();
+        row.put("job", job);
+        row.put("batchSize", Integer.parseInt(batchSize));
+        row.put("threads", Integer.parseInt(threads));
+        row.put("pathIndexing", Boolean.parseBoolean(pathIndexing));
+        row.put("documents", documents);
+        row.put("durationMs", jobDuration.toMillis());
+        row.put("containerDurationMs", containerDuration.toMillis());
+        row.put("documentsPerSecond", Math.round(documents * 10_000.0 / Math.max(1, jobDuration.toMillis())) / 10.0);
+        row.put("bulkRejections", getWriteRejections() - rejectionsBefore);
+        row.put("reindexerPeakMemoryMb", peakMemoryBytes / (1024 * 1024));
+        STEP("Result: " + row);
+        return row;
+    }
+
+    private static void waitForExit(GenericContainer<?> container) throws InterruptedException
+    {
+        final long deadline = System.nanoTime() + REINDEX_TIMEOUT.toNanos();
+        while (container.isRunning())
+        {
+            if (System.nanoTime() > deadline)
+            {
+                Assert.fail("The reindexer didn't finish within " + REINDEX_TIMEOUT);
+            }
+            TimeUnit.MILLISECONDS.sleep(500);
+        }
+    }
+
+    /**
+     * The time taken by the job itself, from the reindexer logging its startup to its last log line, so that neither the startup of the JVM and the Spring context nor the
+     * stopping of the container are counted.
+     *
+     * @return The duration, or null if the startup wasn't logged.
+     */
+    private static Duration getJobDuration(GenericContainer<?> reindexer) throws InterruptedException
+    {
+        final List<String> lines = new ArrayList<>();
+        DockerClientFactory.instance().client()
+                .logContainerCmd(reindexer.getContainerId())
+                .withStdOut(true)
+                .withStdErr(true)
+                .withTimestamps(true)
+                .exec(new ResultCallback.Adapter<Frame>() {
+                    @Override
+                    public void onNext(Frame frame)
+                    {
+                        lines.add(new String(frame.getPayload(), StandardCharsets.UTF_8).strip());
+                    }
+                }).awaitCompletion();
+
+        // Every line starts with its RFC 3339 timestamp, followed by a space.
+        Instant started = null;
+        Instant lastLine = null;
+        for (String line : lines)
+        {
+            final int separator = line.indexOf(' ');
+            if (separator < 0)
+            {
+                continue;
+            }
+            final Instant timestamp = Instant.parse(line.substring(0, separator));
+            if (started == null && STARTED_LOG_LINE.matcher(line.substring(separator + 1)).matches())
+            {
+                started = timestamp;
+            }
+            lastLine = timestamp;
+        }
+        return started == null ? null : Duration.between(started, lastLine);
+    }
+
+    private static void emptyIndex() throws IOException
+    {
+        searchEngineClient.post("/" + CUSTOM_ALFRESCO_INDEX + "/_delete_by_query?refresh=true&conflicts=proceed", "{\"query\":{\"match_all\":{}}}");
+    }
+
+    private static long getDocumentCount() throws IOException
+    {
+        searchEngineClient.post("/" + CUSTOM_ALFRESCO_INDEX + "/_refresh", null);
+        return JsonParser.parseString(searchEngineClient.get("/" + CUSTOM_ALFRESCO_INDEX + "/_count")).getAsJsonObject().get("count").getAsLong();
+    }
+
+    /** The bulk requests rejected by the write thread pool of every node, since the node started. */
+    private static long getWriteRejections() throws IOException
+    {
+        final JsonObject nodes = JsonParser.parseString(searchEngineClient.get("/_nodes/stats/thread_pool")).getAsJsonObject().getAsJsonObject("nodes");
+        long rejected = 0;
+        for (Map.Entry<String, JsonElement> node : nodes.entrySet())
+        {
+            rejected += node.getValue().getAsJsonObject().getAsJsonObject("thread_pool").getAsJsonObject("write").get("rejected").getAsLong();
+        }
+        return rejected;
+    }
+
+    private static List<String> list(String property, String defaultValue)
+    {
+        return Arrays.stream(getSystemProperty(property, defaultValue).split(",")).map(String::strip).toList();
+    }
+}
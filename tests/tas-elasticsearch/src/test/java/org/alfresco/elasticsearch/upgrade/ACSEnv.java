@@ -4,6 +4,12 @@ import static java.time.Duration.ofMinutes;
 
 import static org.alfresco.elasticsearch.upgrade.Utils.waitFor;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
 import org.testcontainers.containers.GenericContainer;
 import org.testcontainers.containers.Network;
 import org.testcontainers.containers.PostgreSQLContainer;
@@ -58,15 +64,100 @@ class ACSEnv extends BaseACSEnv
 
     public void reindexByIds(long fromId, long toId)
     {
+        getAvailabilityTimeline().markPhase("reindex");
         final GenericContainer<?> reIndexing = createReIndexingContainer(fromId, toId);
 
         reIndexing.start();
         waitFor("Re-indexing Startup", ofMinutes(1), reIndexing::isRunning);
-        waitFor("Re-indexing Exit", ofMinutes(5), () -> !reIndexing.isRunning());
+        try (WaitSignal exited = WaitSignal.onContainerEvents(reIndexing, "die"))
+        {
+            waitFor("Re-indexing Exit", cfg.getReindexTimeout(fromId, toId), () -> !reIndexing.isRunning(), exited);
+        }
+    }
+
+    /**
+     * Split the id range into partitions and reindex them concurrently, each one with its own re-indexing container.
+     * <p>
+     * Only the ids up to the highest node id of the database are split, so that every partition has nodes to reindex. The rest of the range, if any, is reindexed by one more
+     * container as a catch-all for the nodes created in the meantime.
+     *
+     * @param fromId
+     *            The first node id to reindex.
+     * @param toId
+     *            The last node id to reindex.
+     * @param partitions
+     *            The number of re-indexing containers sharing the existing nodes.
+     * @return The timing of every partition.
+     */
+    public PartitionedReindexReport reindexByIdsInParallel(long fromId, long toId, int partitions)
+    {
+        if (partitions < 1 || toId <= fromId)
+        {
+            throw new IllegalArgumentException("Invalid partitioning of [" + fromId + ", " + toId + "] into " + partitions + " partitions.");
+        }
+        getAvailabilityTimeline().markPhase("reindex");
+        final long maxNodeId = Math.max(fromId + 1, Math.min(toId, getMaxNodeDbId()));
+        final long partitionSize = Math.max(1, (maxNodeId - fromId) / partitions);
+        final List<long[]> ranges = new ArrayList<>();
+        for (long start = fromId; start < maxNodeId && ranges.size() < partitions; start += partitionSize)
+        {
+            // Neighbouring ranges share their boundary, so no node is missed whether the reindexer treats the upper bound as inclusive or not.
+            ranges.add(new long[]{start, ranges.size() == partitions - 1 ? maxNodeId : Math.min(maxNodeId, start + partitionSize)});
+        }
+        if (maxNodeId < toId)
+        {
+            ranges.add(new long[]{maxNodeId, toId});
+        }
+
+        final List<GenericContainer<?>> containers = ranges.stream().map(range -> createReIndexingContainer(range[0], range[1])).collect(Collectors.toList());
+        final long[] exitTimes = new long[containers.size()];
+        final List<PartitionedReindexReport.Partition> results = new ArrayList<>();
+        final Duration wallClock;
+        final long start = System.nanoTime();
+        try
+        {
+            containers.forEach(GenericContainer::start);
+            try (WaitSignal exited = WaitSignal.onContainerEvents(containers, "die"))
+            {
+                waitFor("Re-indexing Exit", cfg.getReindexTimeout(fromId, toId), () -> {
+                    for (int i = 0; i < containers.size(); i++)
+                    {
+                        if (exitTimes[i] == 0 && !containers.get(i).isRunning())
+                        {
+                            exitTimes[i] = System.nanoTime();
+                        }
+                    }
+                    return Arrays.stream(exitTimes).allMatch(exitTime -> exitTime != 0);
+                }, exited);
+            }
+            wallClock = Duration.ofNanos(System.nanoTime() - start);
+
+            for (int i = 0; i < containers.size(); i++)
+            {
+                final long[] range = ranges.get(i);
+                // Count the shared boundary in the upper partition only, the one it starts.
+                final long nodeCount = countNodes(range[0], i == containers.size() - 1 ? range[1] : range[1] - 1);
+                final Long exitCode = containers.get(i).getCurrentContainerInfo().getState().getExitCodeLong();
+                results.add(new PartitionedReindexReport.Partition(range[0], range[1], nodeCount, Duration.ofNanos(exitTimes[i] - start), exitCode == null ? -1 : exitCode));
+            }
+        }
+        finally
+        {
+            // After a timeout or a failed start the other partitions would otherwise keep writing into the index while the test is failing.
+            containers.forEach(GenericContainer::stop);
+        }
+
+        final PartitionedReindexReport report = new PartitionedReindexReport(results, wallClock);
+        if (!report.isSuccessful())
+        {
+            throw new RuntimeException("Re-indexing failed.\n" + report);
+        }
+        return report;
     }
 
     public void startLiveIndexing()
     {
+        getAvailabilityTimeline().markPhase("start-live-indexing");
         final GenericContainer<?> liveIndexing = createLiveIndexingContainer();
         liveIndexing.start();
     }
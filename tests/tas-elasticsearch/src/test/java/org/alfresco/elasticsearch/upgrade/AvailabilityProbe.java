@@ -1,41 +1,84 @@
 package org.alfresco.elasticsearch.upgrade;
 
+import java.time.Duration;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Supplier;
 
 import com.google.common.util.concurrent.AtomicLongMap;
 import com.google.common.util.concurrent.RateLimiter;
 import com.google.common.util.concurrent.Uninterruptibles;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
 
+/**
+ * Calls a probing function at a given rate and records the outcome and the latency of every call. The latencies of the successful and of the failed calls are kept apart, so
+ * that timeouts show up in a tail of their own rather than being mixed with the calls which were served.
+ * <p>
+ * A probe created with {@link #create(int, Supplier)} is a closed model: a single thread waits for each call to complete before sending the next one, so a stalled call also
+ * stalls the sending and the latency spike is mostly hidden. A probe created with {@link #createOpenModel(int, Supplier)} sends at a fixed arrival rate regardless of the
+ * calls in flight, each one on its own virtual thread, and measures the latency from the time the call was meant to be sent.
+ * <p>
+ * Every call is also recorded in an {@link AvailabilityTimeline}, which keeps the outcome per second rather than for the whole run.
+ */
 class AvailabilityProbe
 {
+    private static final long PAUSE_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
     private final Thread thread;
+    private final int requestsPerSecond;
     private final RateLimiter rateLimiter;
     private final AtomicBoolean stopRequested = new AtomicBoolean();
+    private final AtomicBoolean paused = new AtomicBoolean();
     private final Supplier<ProbeResult> probingFunction;
     private final AtomicLongMap<ProbeResult> stats = AtomicLongMap.create();
+    // Latencies in microseconds. The recorders are lock-free on the probing side and are drained into the accumulated histograms when the stats are read.
+    private final Recorder latencyRecorder = new Recorder(3);
+    private final Histogram latencies = new Histogram(3);
+    private final Recorder failureLatencyRecorder = new Recorder(3);
+    private final Histogram failureLatencies = new Histogram(3);
+    private final AvailabilityTimeline timeline;
+
+    public static AvailabilityProbe create(int requestsPerSecond, Supplier<ProbeResult> probingFunction, AvailabilityTimeline timeline)
+    {
+        return new AvailabilityProbe(requestsPerSecond, probingFunction, timeline, false);
+    }
 
-    public static AvailabilityProbe create(int requestsPerSecond, Supplier<ProbeResult> probingFunction)
+    public static AvailabilityProbe createOpenModel(int requestsPerSecond, Supplier<ProbeResult> probingFunction, AvailabilityTimeline timeline)
     {
-        return new AvailabilityProbe(requestsPerSecond, probingFunction);
+        return new AvailabilityProbe(requestsPerSecond, probingFunction, timeline, true);
     }
 
-    private AvailabilityProbe(int requestsPerSecond, Supplier<ProbeResult> probingFunction)
+    private AvailabilityProbe(int requestsPerSecond, Supplier<ProbeResult> probingFunction, AvailabilityTimeline timeline, boolean openModel)
     {
+        this.requestsPerSecond = requestsPerSecond;
+        this.timeline = Objects.requireNonNull(timeline);
         rateLimiter = RateLimiter.create(requestsPerSecond);
         this.probingFunction = probingFunction;
-        thread = new Thread(this::probing);
+        thread = new Thread(openModel ? this::probingAtFixedArrivalRate : this::probing);
         thread.setDaemon(true);
     }
 
     public Stats getStats()
     {
-        return new Stats(stats.asMap());
+        synchronized (latencies)
+        {
+            latencies.add(latencyRecorder.getIntervalHistogram());
+            failureLatencies.add(failureLatencyRecorder.getIntervalHistogram());
+            return new Stats(stats.asMap(), latencies.copy(), failureLatencies.copy());
+        }
+    }
+
+    public AvailabilityTimeline getTimeline()
+    {
+        return timeline;
     }
 
     public Stats stop()
@@ -52,28 +95,146 @@ class AvailabilityProbe
         thread.start();
     }
 
+    /** Stop sending calls until {@link #resume()}, e.g. while another workload runs against the same environment and would skew the latencies. */
+    public void pause()
+    {
+        paused.set(true);
+    }
+
+    public void resume()
+    {
+        paused.set(false);
+    }
+
     private void probing()
     {
         while (!stopRequested.get())
         {
+            if (paused.get())
+            {
+                LockSupport.parkNanos(PAUSE_CHECK_INTERVAL_NANOS);
+                continue;
+            }
             rateLimiter.acquire();
-            stats.incrementAndGet(probingFunction.get());
+            probe(System.nanoTime());
         }
     }
 
+    private void probingAtFixedArrivalRate()
+    {
+        final long intervalNanos = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+        // Closing the executor waits for the calls in flight.
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            long intendedStart = System.nanoTime();
+            while (!stopRequested.get())
+            {
+                if (paused.get())
+                {
+                    LockSupport.parkNanos(PAUSE_CHECK_INTERVAL_NANOS);
+                    // The calls which would have been sent during the pause are skipped rather than sent all at once.
+                    intendedStart = System.nanoTime();
+                    continue;
+                }
+                final long delay = intendedStart - System.nanoTime();
+                if (delay > 0)
+                {
+                    LockSupport.parkNanos(delay);
+                }
+                final long scheduledAt = intendedStart;
+                executor.execute(() -> probe(scheduledAt));
+                intendedStart += intervalNanos;
+            }
+        }
+    }
+
+    private void probe(long intendedStart)
+    {
+        final ProbeResult result = probingFunction.get();
+        final long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart);
+        (ProbeResult.ok().equals(result) ? latencyRecorder : failureLatencyRecorder).recordValue(latencyMicros);
+        stats.incrementAndGet(result);
+        timeline.record(intendedStart, result, latencyMicros);
+    }
+
     public static class Stats
     {
         private final Map<ProbeResult, Long> results;
+        private final Histogram latencies;
+        private final Histogram failureLatencies;
 
-        private Stats(Map<ProbeResult, Long> results)
+        private Stats(Map<ProbeResult, Long> results, Histogram latencies, Histogram failureLatencies)
         {
             this.results = Map.copyOf(results);
+            this.latencies = latencies;
+            this.failureLatencies = failureLatencies;
         }
 
         @Override
         public String toString()
         {
-            return results.toString();
+            return results + " latency p50=%dms p90=%dms p99=%dms p99.9=%dms max=%dms, failed calls p50=%dms p99=%dms max=%dms".formatted(
+                    getP50().toMillis(), getP90().toMillis(), getP99().toMillis(), getP999().toMillis(), getMaxLatency().toMillis(),
+                    getFailureLatencyAtPercentile(50).toMillis(), getFailureLatencyAtPercentile(99).toMillis(), toDuration(failureLatencies.getMaxValue()).toMillis());
+        }
+
+        /**
+         * Get the latency of the successful probe calls at the given percentile. The failed calls are reported by {@link #getFailureLatencyAtPercentile(double)}.
+         *
+         * @param percentile
+         *            The percentile, between 0 and 100.
+         * @return The latency, or zero when no call has succeeded.
+         */
+        public Duration getLatencyAtPercentile(double percentile)
+        {
+            return toDuration(latencies.getValueAtPercentile(percentile));
+        }
+
+        /**
+         * Get the latency of the failed probe calls at the given percentile, e.g. how long the calls which timed out were waiting.
+         *
+         * @param percentile
+         *            The percentile, between 0 and 100.
+         * @return The latency, or zero when no call has failed.
+         */
+        public Duration getFailureLatencyAtPercentile(double percentile)
+        {
+            return toDuration(failureLatencies.getValueAtPercentile(percentile));
+        }
+
+        public Duration getP50()
+        {
+            return getLatencyAtPercentile(50);
+        }
+
+        public Duration getP90()
+        {
+            return getLatencyAtPercentile(90);
+        }
+
+        public Duration getP99()
+        {
+            return getLatencyAtPercentile(99);
+        }
+
+        public Duration getP999()
+        {
+            return getLatencyAtPercentile(99.9);
+        }
+
+        public Duration getMaxLatency()
+        {
+            return toDuration(latencies.getMaxValue());
+        }
+
+        private static Duration toDuration(long micros)
+        {
+            return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+
+        public long getProbeCount()
+        {
+            return results.values().stream().mapToLong(Number::longValue).sum();
         }
 
         public int getSuccessRatioInPercents()
@@ -116,6 +277,12 @@ class AvailabilityProbe
             this.result = Objects.requireNonNull(result);
         }
 
+        /** @return OK, FAIL or the class name of the exception the call failed with. */
+        public String getName()
+        {
+            return result instanceof Class<?> failure ? failure.getName() : result.toString();
+        }
+
         @Override
         public String toString()
         {
@@ -0,0 +1,216 @@
+package org.alfresco.elasticsearch.upgrade;
+
+import static org.alfresco.tas.SystemPropertyHelper.getSystemProperty;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.google.common.util.concurrent.AtomicLongMap;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import org.alfresco.elasticsearch.upgrade.AvailabilityProbe.ProbeResult;
+
+/**
+ * The outcome of the probe calls in one second buckets, together with the phases of the scenario, so that a drop in availability or a latency spike can be traced back to the
+ * step which caused it. A timeline can be shared by the probes of several environments, e.g. before and after an upgrade.
+ * <p>
+ * The timeline is written as CSV and JSON to -Dupgrade.timeline.dir (target/availability-timelines by default). Seconds without any probe call, e.g. while no environment was
+ * being probed, are included with no requests.
+ */
+class AvailabilityTimeline
+{
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private final long originNanos = System.nanoTime();
+    private final long originEpochMillis = System.currentTimeMillis();
+    private final ConcurrentSkipListMap<Long, Bucket> buckets = new ConcurrentSkipListMap<>();
+    private final List<Phase> phases = new CopyOnWriteArrayList<>();
+
+    /**
+     * Record a probe call in the bucket of the second it was sent in.
+     *
+     * @param sentAtNanos
+     *            The {@link System#nanoTime()} at which the call was (meant to be) sent.
+     * @param result
+     *            The outcome of the call.
+     * @param latencyMicros
+     *            The latency of the call.
+     */
+    void record(long sentAtNanos, ProbeResult result, long latencyMicros)
+    {
+        buckets.computeIfAbsent(toEpochMillis(sentAtNanos) / 1000, second -> new Bucket()).record(result, latencyMicros);
+    }
+
+    /**
+     * Mark the start of a phase of the scenario. Every second from now on is attributed to this phase until the next one starts.
+     *
+     * @param name
+     *            The name of the phase.
+     */
+    void markPhase(String name)
+    {
+        phases.add(new Phase(toEpochMillis(System.nanoTime()), Objects.requireNonNull(name)));
+    }
+
+    List<Phase> getPhases()
+    {
+        return List.copyOf(phases);
+    }
+
+    /** @return One row per second, from the first to the last second with a probe call. */
+    List<Map<String, Object>> getRows()
+    {
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        if (buckets.isEmpty())
+        {
+            return rows;
+        }
+
+        final long first = buckets.firstKey();
+        for (long second = first; second <= buckets.lastKey(); second++)
+        {
+            final Bucket bucket = buckets.get(second);
+            final Map<String, Long> results = bucket == null ? Map.of() : bucket.getResults();
+            final Histogram latencies = bucket == null ? null : bucket.getLatencies();
+
+            final Map<String, Object> row = new LinkedHashMap<>();
+            row.put("time", Instant.ofEpochSecond(second).toString());
+            row.put("offsetSeconds", second - first);
+            row.put("phase", getPhaseAt(second * 1000 + 999));
+            row.put("requests", results.values().stream().mapToLong(Long::longValue).sum());
+            row.put("ok", results.getOrDefault(ProbeResult.ok().getName(), 0L));
+            row.put("failures", results.entrySet().stream()
+                    .filter(e -> !e.getKey().equals(ProbeResult.ok().getName()))
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, Long::sum, TreeMap::new)));
+            row.put("p50Ms", latencies == null ? null : toMillis(latencies.getValueAtPercentile(50)));
+            row.put("p90Ms", latencies == null ? null : toMillis(latencies.getValueAtPercentile(90)));
+            row.put("p99Ms", latencies == null ? null : toMillis(latencies.getValueAtPercentile(99)));
+            row.put("maxMs", latencies == null ? null : toMillis(latencies.getMaxValue()));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Write the timeline as CSV and JSON.
+     *
+     * @param name
+     *            The name of the report files.
+     * @return The path of the JSON report.
+     */
+    Path write(String name)
+    {
+        final Path directory = Path.of(getSystemProperty("upgrade.timeline.dir", "target/availability-timelines"));
+        final Path jsonReport = directory.resolve(name + ".json");
+        final List<Map<String, Object>> rows = getRows();
+        try
+        {
+            Files.createDirectories(directory);
+            try (Writer writer = Files.newBufferedWriter(jsonReport, StandardCharsets.UTF_8))
+            {
+                final Map<String, Object> report = new LinkedHashMap<>();
+                report.put("scenario", name);
+                report.put("phases", phases.stream()
+                        .map(phase -> Map.of("name", phase.name(), "startedAt", Instant.ofEpochMilli(phase.startedAtEpochMillis()).toString()))
+                        .collect(Collectors.toList()));
+                report.put("seconds", rows);
+                GSON.toJson(report, writer);
+            }
+            Files.writeString(directory.resolve(name + ".csv"), toCsv(rows), StandardCharsets.UTF_8);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Failed to write the `" + name + "` availability timeline.", e);
+        }
+        return jsonReport;
+    }
+
+    private String getPhaseAt(long epochMillis)
+    {
+        String current = "";
+        for (Phase phase : phases)
+        {
+            if (phase.startedAtEpochMillis() <= epochMillis)
+            {
+                current = phase.name();
+            }
+        }
+        return current;
+    }
+
+    private long toEpochMillis(long nanoTime)
+    {
+        return originEpochMillis + TimeUnit.NANOSECONDS.toMillis(nanoTime - originNanos);
+    }
+
+    private static double toMillis(long micros)
+    {
+        return Math.round(micros / 100.0) / 10.0;
+    }
+
+    private static String toCsv(List<Map<String, Object>> rows)
+    {
+        final StringBuilder csv = new StringBuilder("time,offsetSeconds,phase,requests,ok,failures,p50Ms,p90Ms,p99Ms,maxMs\n");
+        for (Map<String, Object> row : rows)
+        {
+            csv.append(row.values().stream()
+                    .map(value -> value instanceof Map<?, ?> map
+                            ? map.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining(";"))
+                            : Objects.toString(value, ""))
+                    .map(value -> value.contains(",") ? "\"" + value.replace("\"", "\"\"") + "\"" : value)
+                    .collect(Collectors.joining(",")))
+                    .append('\n');
+        }
+        return csv.toString();
+    }
+
+    /**
+     * The start of a phase of the scenario.
+     *
+     * @param startedAtEpochMillis
+     *            The time the phase started at.
+     * @param name
+     *            The name of the phase.
+     */
+    record Phase(long startedAtEpochMillis, String name)
+    {}
+
+    private static class Bucket
+    {
+        private final AtomicLongMap<String> results = AtomicLongMap.create();
+        private final ConcurrentHistogram latencies = new ConcurrentHistogram(3);
+
+        void record(ProbeResult result, long latencyMicros)
+        {
+            results.incrementAndGet(result.getName());
+            latencies.recordValue(latencyMicros);
+        }
+
+        Map<String, Long> getResults()
+        {
+            return Map.copyOf(results.asMap());
+        }
+
+        Histogram getLatencies()
+        {
+            return latencies.copy();
+        }
+    }
+}
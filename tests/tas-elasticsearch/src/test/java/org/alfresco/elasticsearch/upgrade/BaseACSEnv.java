@@ -8,7 +8,9 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
@@ -21,26 +23,37 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.testcontainers.containers.BindMode;
 import org.testcontainers.containers.Container.ExecResult;
 import org.testcontainers.containers.GenericContainer;
 import org.testcontainers.images.builder.ImageFromDockerfile;
-import org.testcontainers.images.builder.Transferable;
+import org.testcontainers.utility.MountableFile;
 
 import org.alfresco.elasticsearch.upgrade.AvailabilityProbe.ProbeResult;
 
 abstract class BaseACSEnv implements AutoCloseable
 {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BaseACSEnv.class);
+    private static final String CONTAINER_METADATA_DUMP_PATH = "/tmp/pg-dump-alfresco.dump";
+    private static final String CONTAINER_SQL_SCRIPT_PATH = "/tmp/script.sql";
+
     protected final Config cfg;
     private final List<GenericContainer<?>> createdContainers = new ArrayList<>();
 
+    private URI repoBaseUri;
     private RepoHttpClient repoHttpClient;
+    private RepoHttpClient probeHttpClient;
 
-    private String metadataDumpToRestore;
+    private Path metadataDumpToRestore;
+    private MetadataTransfer metadataDump;
+    private MetadataTransfer metadataRestore;
     private Path alfDataHostPath;
     private boolean readOnlyContentStore;
 
     private final AtomicReference<AvailabilityProbe> searchAPIAvailabilityProbe = new AtomicReference<>();
+    private AvailabilityTimeline availabilityTimeline = new AvailabilityTimeline();
 
     protected BaseACSEnv(Config cfg)
     {
@@ -51,7 +64,10 @@ abstract class BaseACSEnv implements AutoCloseable
 
     protected abstract GenericContainer<?> getPostgres();
 
-    public void setMetadataDumpToRestore(String metadataDumpToRestore)
+    /**
+     * Restore the given dump, as written by {@link #dumpMetadata()}, before the environment is started.
+     */
+    public void setMetadataDumpToRestore(Path metadataDumpToRestore)
     {
         this.metadataDumpToRestore = Objects.requireNonNull(metadataDumpToRestore);
     }
@@ -73,6 +89,19 @@ abstract class BaseACSEnv implements AutoCloseable
         alfDataHostPath = hostPath;
     }
 
+    /**
+     * Record the availability of this environment in the given timeline, rather than in one of its own. Must be set before the probe is started.
+     */
+    public void setAvailabilityTimeline(AvailabilityTimeline availabilityTimeline)
+    {
+        this.availabilityTimeline = Objects.requireNonNull(availabilityTimeline);
+    }
+
+    public AvailabilityTimeline getAvailabilityTimeline()
+    {
+        return availabilityTimeline;
+    }
+
     public void start()
     {
         if (getAlfresco().isRunning())
@@ -83,8 +112,7 @@ abstract class BaseACSEnv implements AutoCloseable
         if (metadataDumpToRestore != null)
         {
             getPostgres().start();
-            getPostgres().copyFileToContainer(Transferable.of(metadataDumpToRestore), "/opt/alfresco/pg-dump-alfresco.sql");
-            execInPostgres("cat /opt/alfresco/pg-dump-alfresco.sql | psql -U alfresco");
+            restoreMetadataDump();
         }
 
         if (alfDataHostPath != null)
@@ -95,18 +123,29 @@ abstract class BaseACSEnv implements AutoCloseable
         }
 
         createdContainers.forEach(GenericContainer::start);
-        repoHttpClient = new RepoHttpClient(URI.create("http://" + getAlfresco().getHost() + ":" + getAlfresco().getMappedPort(8080)));
+        repoBaseUri = URI.create("http://" + getAlfresco().getHost() + ":" + getAlfresco().getMappedPort(8080));
+        repoHttpClient = new RepoHttpClient(repoBaseUri);
+        // The probe gets its own connection pool so that it can't starve the requests of the test itself, or the other way round.
+        probeHttpClient = new RepoHttpClient(repoBaseUri, cfg.getProbeConnections());
 
         waitUntilServerIsUp(ofMinutes(5));
     }
 
+    /** @return The base URI of the repository, once started. */
+    public URI getRepoBaseUri()
+    {
+        return repoBaseUri;
+    }
+
     public AvailabilityProbe getRunningSearchAPIAvailabilityProbe()
     {
         final AvailabilityProbe current = searchAPIAvailabilityProbe.get();
         if (current != null)
             return current;
 
-        final AvailabilityProbe created = AvailabilityProbe.create(10, this::checkSearchAPIAvailability);
+        final AvailabilityProbe created = cfg.isOpenModelProbe()
+                ? AvailabilityProbe.createOpenModel(cfg.getProbeRequestsPerSecond(), this::checkSearchAPIAvailability, availabilityTimeline)
+                : AvailabilityProbe.create(cfg.getProbeRequestsPerSecond(), this::checkSearchAPIAvailability, availabilityTimeline);
         if (searchAPIAvailabilityProbe.compareAndSet(null, created))
         {
             created.start();
@@ -123,9 +162,55 @@ abstract class BaseACSEnv implements AutoCloseable
         createdContainers.forEach(GenericContainer::stop);
     }
 
-    public String getMetadataDump()
+    /**
+     * Dump the metadata into a temporary file of the host. The dump is written in the custom format of pg_dump, which is compressed and can be restored with parallel jobs.
+     * It's streamed from the container to the file, so the size of the repository is only bounded by the disk space.
+     *
+     * @return The dump file.
+     */
+    public Path dumpMetadata()
+    {
+        final Path dumpFile = Utils.createTempFile("pg-dump-alfresco", ".dump");
+        final long start = System.nanoTime();
+        execInPostgres("pg_dump -Fc -U alfresco -f " + CONTAINER_METADATA_DUMP_PATH + " alfresco");
+        // Streamed, the dump is never held in memory.
+        getPostgres().copyFileFromContainer(CONTAINER_METADATA_DUMP_PATH, dump -> Files.copy(dump, dumpFile, StandardCopyOption.REPLACE_EXISTING));
+        execInPostgres("rm -f " + CONTAINER_METADATA_DUMP_PATH);
+        metadataDump = MetadataTransfer.of("dump", dumpFile, start);
+        LOGGER.info("{}", metadataDump);
+        return dumpFile;
+    }
+
+    /** @return The size and the duration of the last {@link #dumpMetadata()}, if any. */
+    public Optional<MetadataTransfer> getMetadataDump()
+    {
+        return Optional.ofNullable(metadataDump);
+    }
+
+    /** @return The size and the duration of the restore of the metadata dump, if one was restored on start. */
+    public Optional<MetadataTransfer> getMetadataRestore()
+    {
+        return Optional.ofNullable(metadataRestore);
+    }
+
+    /**
+     * Run a SQL script against the database of the environment, in a single transaction.
+     *
+     * @return The output of the script, without headers.
+     */
+    String runSqlScript(String script)
     {
-        return execInPostgres("pg_dump -c -U alfresco alfresco").getStdout();
+        final Path scriptFile = Utils.createTempFile("script", ".sql");
+        try
+        {
+            Files.writeString(scriptFile, script);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Failed to write the SQL script to `" + scriptFile + "`.", e);
+        }
+        getPostgres().copyFileToContainer(MountableFile.forHostPath(scriptFile), CONTAINER_SQL_SCRIPT_PATH);
+        return execInPostgres("psql -U alfresco -v ON_ERROR_STOP=1 --single-transaction -q -t -A -f " + CONTAINER_SQL_SCRIPT_PATH).getStdout();
     }
 
     public long getMaxNodeDbId()
@@ -133,6 +218,11 @@ abstract class BaseACSEnv implements AutoCloseable
         return Long.parseLong(execInPostgres("psql -U alfresco -t -c 'SELECT max(id) FROM alf_node'").getStdout().strip());
     }
 
+    public long countNodes(long fromId, long toId)
+    {
+        return Long.parseLong(execInPostgres("psql -U alfresco -t -c 'SELECT count(*) FROM alf_node WHERE id BETWEEN " + fromId + " AND " + toId + "'").getStdout().strip());
+    }
+
     public UUID uploadFile(URL contentUrl, String fileName) throws IOException
     {
         return repoHttpClient.uploadFile(contentUrl, fileName);
@@ -140,6 +230,7 @@ abstract class BaseACSEnv implements AutoCloseable
 
     public void setElasticsearchSearchService() throws IOException
     {
+        availabilityTimeline.markPhase("switch-to-elasticsearch");
         repoHttpClient.setSearchService("elasticsearch");
     }
 
@@ -242,6 +333,17 @@ abstract class BaseACSEnv implements AutoCloseable
         });
     }
 
+    private void restoreMetadataDump()
+    {
+        final long start = System.nanoTime();
+        getPostgres().copyFileToContainer(MountableFile.forHostPath(metadataDumpToRestore), CONTAINER_METADATA_DUMP_PATH);
+        // The parallel jobs restore the data and build the indexes of several tables at once, so they need as many connections to the database.
+        execInPostgres("pg_restore -U alfresco -d alfresco --clean --if-exists --no-owner -j " + cfg.getMetadataRestoreJobs() + " " + CONTAINER_METADATA_DUMP_PATH);
+        execInPostgres("rm -f " + CONTAINER_METADATA_DUMP_PATH);
+        metadataRestore = MetadataTransfer.of("restore", metadataDumpToRestore, start);
+        LOGGER.info("{}", metadataRestore);
+    }
+
     private ExecResult execInPostgres(String command)
     {
         return execInContainer(getPostgres(), command);
@@ -275,11 +377,50 @@ abstract class BaseACSEnv implements AutoCloseable
     {
         try
         {
-            return repoHttpClient.searchForFiles("testing").map(v -> ProbeResult.ok()).orElseGet(ProbeResult::fail);
+            return probeHttpClient.searchForFiles("testing").map(v -> ProbeResult.ok()).orElseGet(ProbeResult::fail);
         }
         catch (Exception e)
         {
             return ProbeResult.fail(e);
         }
     }
+
+    /**
+     * The throughput of a dump or of a restore of the metadata.
+     *
+     * @param operation
+     *            Either dump or restore.
+     * @param file
+     *            The dump file on the host.
+     * @param bytes
+     *            The size of the dump file.
+     * @param duration
+     *            The time taken, including the copy of the file from or to the container.
+     */
+    public record MetadataTransfer(String operation, Path file, long bytes, Duration duration)
+    {
+        private static MetadataTransfer of(String operation, Path file, long startNanos)
+        {
+            final Duration duration = Duration.ofNanos(System.nanoTime() - startNanos);
+            try
+            {
+                return new MetadataTransfer(operation, file, Files.size(file), duration);
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException("Failed to read the size of `" + file + "`.", e);
+            }
+        }
+
+        public double getMegabytesPerSecond()
+        {
+            return duration.isZero() ? 0 : bytes / (1024.0 * 1024.0) * 1000 / duration.toMillis();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Metadata %s of %s: %.1f MB in %d ms, %.1f MB/s".formatted(operation, file, bytes / (1024.0 * 1024.0), duration.toMillis(), getMegabytesPerSecond());
+        }
+    }
 }
@@ -1,6 +1,11 @@
 package org.alfresco.elasticsearch.upgrade;
 
 import static org.alfresco.tas.AlfrescoStackInitializer.getImagesConfig;
+import static org.alfresco.tas.SystemPropertyHelper.getSystemProperty;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
 
 import org.alfresco.tas.EnvHelper;
 import org.alfresco.tas.SearchEngineType;
@@ -43,6 +48,119 @@ interface Config
         return "alfresco";
     }
 
+    /** @return The number of re-indexing containers used for the initial reindex, set with -Dreindex.partitions. */
+    default int getReindexPartitions()
+    {
+        return Integer.parseInt(getSystemProperty("reindex.partitions", "1"));
+    }
+
+    /**
+     * @param fromId
+     *            The first node id reindexed.
+     * @param toId
+     *            The last node id reindexed.
+     * @return The time a reindex of the range may take, set in minutes with -Dreindex.timeout.minutes. By default 5 minutes plus a minute per 50000 node ids.
+     */
+    default Duration getReindexTimeout(long fromId, long toId)
+    {
+        final String timeout = getSystemProperty("reindex.timeout.minutes", "");
+        return Duration.ofMinutes(timeout.isBlank() ? 5 + Math.max(0, toId - fromId) / 50_000 : Long.parseLong(timeout));
+    }
+
+    /** @return The p99 latency the search API must keep during the upgrade, set in milliseconds with -Dupgrade.slo.search.p99.ms. Not checked unless set. */
+    default Optional<Duration> getSearchLatencySloP99()
+    {
+        return getLatencySlo("upgrade.slo.search.p99.ms");
+    }
+
+    /** @return The p99.9 latency the search API must keep during the upgrade, set in milliseconds with -Dupgrade.slo.search.p999.ms. Not checked unless set. */
+    default Optional<Duration> getSearchLatencySloP999()
+    {
+        return getLatencySlo("upgrade.slo.search.p999.ms");
+    }
+
+    private static Optional<Duration> getLatencySlo(String property)
+    {
+        final String millis = getSystemProperty(property, "");
+        return millis.isBlank() ? Optional.empty() : Optional.of(Duration.ofMillis(Long.parseLong(millis)));
+    }
+
+    /** @return The rate at which the search API is probed during the upgrade, set with -Dupgrade.probe.rps. */
+    default int getProbeRequestsPerSecond()
+    {
+        return Integer.parseInt(getSystemProperty("upgrade.probe.rps", "10"));
+    }
+
+    /**
+     * @return Whether the search API is probed at a fixed arrival rate rather than one call after the other, set with -Dupgrade.probe.mode=open. The open model keeps sending
+     *         while calls are stalled, so their latency isn't hidden.
+     */
+    default boolean isOpenModelProbe()
+    {
+        return "open".equalsIgnoreCase(getSystemProperty("upgrade.probe.mode", "closed"));
+    }
+
+    /** @return The size of the connection pool used by the probe, set with -Dupgrade.probe.connections. Defaults to one connection per request per second, and at least 10. */
+    default int getProbeConnections()
+    {
+        return Integer.parseInt(getSystemProperty("upgrade.probe.connections", String.valueOf(Math.max(10, getProbeRequestsPerSecond()))));
+    }
+
+    /** @return The time between two samples of the search engine statistics, set in milliseconds with -Dupgrade.stats.intervalMs. */
+    default Duration getSearchEngineStatsInterval()
+    {
+        return Duration.ofMillis(Long.parseLong(getSystemProperty("upgrade.stats.intervalMs", "5000")));
+    }
+
+    /** @return The number of parallel pg_restore jobs used to restore a metadata dump, set with -Dupgrade.restore.jobs. */
+    default int getMetadataRestoreJobs()
+    {
+        return Integer.parseInt(getSystemProperty("upgrade.restore.jobs", "4"));
+    }
+
+    /**
+     * @return The number of documents generated in every leaf folder of the synthetic repository, set with -Dupgrade.synthetic.documentsPerFolder. 0, the default, doesn't
+     *         generate a synthetic repository.
+     */
+    default int getSyntheticDocumentsPerFolder()
+    {
+        return Integer.parseInt(getSystemProperty("upgrade.synthetic.documentsPerFolder", "0"));
+    }
+
+    /** @return The depth of the folder tree of the synthetic repository, set with -Dupgrade.synthetic.folderDepth. */
+    default int getSyntheticFolderDepth()
+    {
+        return Integer.parseInt(getSystemProperty("upgrade.synthetic.folderDepth", "3"));
+    }
+
+    /** @return The number of sub-folders of every folder of the synthetic repository, set with -Dupgrade.synthetic.foldersPerLevel. */
+    default int getSyntheticFoldersPerLevel()
+    {
+        return Integer.parseInt(getSystemProperty("upgrade.synthetic.foldersPerLevel", "10"));
+    }
+
+    /**
+     * @return The number of requests of every query class measured when comparing the search engines, set with -Dupgrade.compare.requests. 0, the default, skips the
+     *         comparison.
+     */
+    default int getSearchComparisonRequests()
+    {
+        return Integer.parseInt(getSystemProperty("upgrade.compare.requests", "0"));
+    }
+
+    /** @return The number of concurrent requests when comparing the search engines, set with -Dupgrade.compare.concurrency. */
+    default int getSearchComparisonConcurrency()
+    {
+        return Integer.parseInt(getSystemProperty("upgrade.compare.concurrency", "8"));
+    }
+
+    /** @return Every image used by the upgrade scenario. */
+    default List<String> getImages()
+    {
+        return List.of(getRepositoryImage(), getSearchServiceImageName(), getPostgreSQLImage(), getActiveMqImage(), getSharedFileStoreImage(),
+                getTransformCoreAIOImage(), getTransformRouterImage(), getReIndexingImage(), getLiveIndexingImage(), getSearchEngineImage());
+    }
+
     static Config getUpgradeScenarioConfig()
     {
         return new Config() {
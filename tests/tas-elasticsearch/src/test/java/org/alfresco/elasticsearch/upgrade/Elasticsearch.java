@@ -7,14 +7,15 @@ import static org.alfresco.elasticsearch.upgrade.Utils.waitFor;
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Collection;
-import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -22,7 +23,7 @@ import java.util.stream.Stream;
 import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.command.ConnectToNetworkCmd;
 import com.github.dockerjava.api.model.ContainerNetwork;
-import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
 import org.testcontainers.containers.GenericContainer;
 import org.testcontainers.containers.Network;
 
@@ -35,7 +36,7 @@ class Elasticsearch implements AutoCloseable
     private final Config cfg;
     private final GenericContainer<?> searchContainer;
     private final Collection<String> additionalNetworks;
-    private final Gson gson = new Gson();
+    private SearchEngineStatsCollector statsCollector;
 
     public Elasticsearch(Config cfg, Network network, Network... networks)
     {
@@ -70,13 +71,35 @@ class Elasticsearch implements AutoCloseable
 
     public long getIndexedDocumentCount() throws IOException
     {
-        final Map<?, ?> countResponse = gson.fromJson(getString("/" + cfg.getIndexName() + "/_count"), Map.class);
-        return Optional
-                .ofNullable(countResponse.get("count"))
-                .filter(Number.class::isInstance)
-                .map(Number.class::cast)
-                .map(Number::longValue)
-                .orElseThrow();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(openStream("/" + cfg.getIndexName() + "/_count"), StandardCharsets.UTF_8)))
+        {
+            reader.beginObject();
+            while (reader.hasNext())
+            {
+                if ("count".equals(reader.nextName()))
+                {
+                    return reader.nextLong();
+                }
+                reader.skipValue();
+            }
+        }
+        throw new IOException("The response of _count has no count.");
+    }
+
+    /**
+     * Start sampling the statistics of the search engine. The collector is stopped when the search engine is closed.
+     *
+     * @param interval
+     *            The time between two samples.
+     * @return The running collector.
+     */
+    public SearchEngineStatsCollector startStatsCollector(Duration interval)
+    {
+        if (statsCollector == null)
+        {
+            statsCollector = new SearchEngineStatsCollector(this::openStream, cfg.getIndexName()).start(interval);
+        }
+        return statsCollector;
     }
 
     public void waitForIndexCreation(Duration timeout)
@@ -106,6 +129,14 @@ class Elasticsearch implements AutoCloseable
     }
 
     private String getString(String path) throws IOException
+    {
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(openStream(path))))
+        {
+            return r.lines().collect(Collectors.joining(System.lineSeparator()));
+        }
+    }
+
+    private InputStream openStream(String path) throws IOException
     {
         final URL url = getRequestUrl(path);
 
@@ -115,10 +146,7 @@ class Elasticsearch implements AutoCloseable
         c.setReadTimeout(ES_API_TIMEOUT_MS);
         c.setDoOutput(true);
 
-        try (BufferedReader r = new BufferedReader(new InputStreamReader(c.getInputStream())))
-        {
-            return r.lines().collect(Collectors.joining(System.lineSeparator()));
-        }
+        return c.getInputStream();
     }
 
     public void start()
@@ -181,6 +209,7 @@ class Elasticsearch implements AutoCloseable
     @Override
     public void close()
     {
+        Optional.ofNullable(statsCollector).ifPresent(SearchEngineStatsCollector::stop);
         searchContainer.close();
     }
 }
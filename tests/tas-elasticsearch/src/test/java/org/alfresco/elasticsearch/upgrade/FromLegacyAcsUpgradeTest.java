@@ -3,6 +3,7 @@ package org.alfresco.elasticsearch.upgrade;
 import static java.time.Duration.ofMinutes;
 
 import static org.alfresco.elasticsearch.upgrade.Config.getUpgradeScenarioConfig;
+import static org.alfresco.utility.report.log.Step.STEP;
 
 import java.io.IOException;
 import java.net.URL;
@@ -32,6 +33,8 @@ public class FromLegacyAcsUpgradeTest
             legacyEnv.expectNoSearchResult(MAX_TIMEOUT, UUID.randomUUID().toString());
             legacyEnv.uploadFile(TEST_FILE_URL, FILE_UPLOADED_AFTER_LEGACY_ENVIRONMENT_STARTUP);
             legacyEnv.expectSearchResult(MAX_TIMEOUT, SEARCH_TERM, FILE_UPLOADED_AFTER_LEGACY_ENVIRONMENT_STARTUP);
+            // The legacy environment is probed until it is upgraded, the upgraded one from its start, so the timeline shows the gap between them.
+            final AvailabilityProbe legacyProbe = legacyEnv.getRunningSearchAPIAvailabilityProbe();
 
             final Elasticsearch elasticsearch = scenario.startElasticsearch();
             Assert.assertFalse(elasticsearch.isIndexCreated());
@@ -40,6 +43,7 @@ public class FromLegacyAcsUpgradeTest
 
             try (ACSEnv mirroredEnv = scenario.startMirroredEnvWitElasticsearchBasedSearchService())
             {
+                mirroredEnv.getMetadataRestore().ifPresent(restore -> STEP(restore.toString()));
                 legacyEnv.uploadFile(TEST_FILE_URL, FILE_UPLOADED_WHILE_MIRRORING);
                 legacyEnv.expectSearchResult(MAX_TIMEOUT, SEARCH_TERM, FILE_UPLOADED_AFTER_LEGACY_ENVIRONMENT_STARTUP, FILE_UPLOADED_WHILE_MIRRORING);
 
@@ -62,9 +66,11 @@ public class FromLegacyAcsUpgradeTest
                     FILE_UPLOADED_AFTER_LEGACY_ENVIRONMENT_STARTUP,
                     FILE_UPLOADED_WHILE_MIRRORING,
                     FILE_UPLOADED_BEFORE_UPGRADING_LEGACY_ENVIRONMENT);
+            STEP("Search API availability of the legacy environment: " + legacyProbe.stop());
 
             try (final ACSEnv upgradedEnv = scenario.upgradeLegacyEnvironmentToCurrent())
             {
+                upgradedEnv.getRunningSearchAPIAvailabilityProbe();
                 upgradedEnv.expectSearchResult(MAX_TIMEOUT, SEARCH_TERM, FILE_UPLOADED_AFTER_LEGACY_ENVIRONMENT_STARTUP);
 
                 upgradedEnv.startLiveIndexing();
@@ -79,7 +85,11 @@ public class FromLegacyAcsUpgradeTest
                         FILE_UPLOADED_WHILE_MIRRORING,
                         FILE_UPLOADED_BEFORE_UPGRADING_LEGACY_ENVIRONMENT,
                         FILE_UPLOADED_AFTER_UPGRADE);
+
+                STEP("Search API availability of the upgraded environment: " + upgradedEnv.getRunningSearchAPIAvailabilityProbe().stop());
             }
+            STEP("Slowest waits:\n" + Utils.describeSlowestWaits(10));
+            STEP("Search API availability timeline written to " + scenario.getAvailabilityTimeline().write("from-legacy-acs-upgrade").toAbsolutePath());
         }
     }
 }
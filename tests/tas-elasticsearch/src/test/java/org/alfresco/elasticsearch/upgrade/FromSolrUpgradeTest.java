@@ -3,10 +3,12 @@ package org.alfresco.elasticsearch.upgrade;
 import static java.time.Duration.ofMinutes;
 
 import static org.alfresco.elasticsearch.upgrade.Config.getUpgradeScenarioConfig;
+import static org.alfresco.utility.report.log.Step.STEP;
 
 import java.io.IOException;
 import java.net.URL;
 import java.time.Duration;
+import java.util.UUID;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -27,21 +29,37 @@ public class FromSolrUpgradeTest
     @Test
     public void testZeroDowntimeUpgradeFromSolrToElasticsearch() throws IOException, InterruptedException
     {
-        try (final UpgradeScenario scenario = new UpgradeScenario(getUpgradeScenarioConfig()))
+        final Config cfg = getUpgradeScenarioConfig();
+        try (final UpgradeScenario scenario = new UpgradeScenario(cfg))
         {
             final ACSEnv initialEnv = scenario.startInitialEnvWithSolrBasedSearchService();
-            initialEnv.uploadFile(TEST_FILE_URL, FILE_UPLOADED_BEFORE_INITIAL_REINDEXING);
+            final UUID templateDocument = initialEnv.uploadFile(TEST_FILE_URL, FILE_UPLOADED_BEFORE_INITIAL_REINDEXING);
+            if (cfg.getSyntheticDocumentsPerFolder() > 0)
+            {
+                STEP(new SyntheticRepositoryGenerator(initialEnv)
+                        .withFolderTree(cfg.getSyntheticFolderDepth(), cfg.getSyntheticFoldersPerLevel())
+                        .withDocumentsPerFolder(cfg.getSyntheticDocumentsPerFolder())
+                        .generate(templateDocument, "synthetic")
+                        .toString());
+            }
             initialEnv.expectSearchResult(MAX_TIMEOUT, SEARCH_TERM, FILE_UPLOADED_BEFORE_INITIAL_REINDEXING);
+            if (cfg.getSearchComparisonRequests() > 0)
+            {
+                // Created before the metadata is mirrored, so that its nodes are below the initial reindexing upper bound and exist in both environments.
+                SearchEngineComparison.createUser(initialEnv.getRepoBaseUri());
+            }
 
             final AvailabilityProbe probe = initialEnv.getRunningSearchAPIAvailabilityProbe();
 
             final Elasticsearch elasticsearch = scenario.startElasticsearch();
+            final SearchEngineStatsCollector searchEngineStats = elasticsearch.startStatsCollector(cfg.getSearchEngineStatsInterval());
             Assert.assertFalse(elasticsearch.isIndexCreated());
 
             final long initialReIndexingUpperBound = initialEnv.getMaxNodeDbId();
 
             try (ACSEnv mirroredEnv = scenario.startMirroredEnvWitElasticsearchBasedSearchService())
             {
+                mirroredEnv.getMetadataRestore().ifPresent(restore -> STEP(restore.toString()));
                 mirroredEnv.expectNoSearchResult(MAX_TIMEOUT, SEARCH_TERM);
                 Assert.assertTrue(mirroredEnv.getMaxNodeDbId() >= initialEnv.getMaxNodeDbId());
                 elasticsearch.waitForIndexCreation(MAX_TIMEOUT);
@@ -50,10 +68,28 @@ public class FromSolrUpgradeTest
                 mirroredEnv.expectNoSearchResult(MAX_TIMEOUT, SEARCH_TERM);
 
                 mirroredEnv.startLiveIndexing();
-                mirroredEnv.reindexByIds(0, initialReIndexingUpperBound * 2);
+                final PartitionedReindexReport reindexReport = mirroredEnv.reindexByIdsInParallel(0, initialReIndexingUpperBound * 2, cfg.getReindexPartitions());
+                STEP("Initial reindex:\n" + reindexReport);
 
                 Assert.assertTrue(elasticsearch.getIndexedDocumentCount() > 0);
                 mirroredEnv.expectSearchResult(MAX_TIMEOUT, SEARCH_TERM, FILE_UPLOADED_BEFORE_INITIAL_REINDEXING);
+
+                if (cfg.getSearchComparisonRequests() > 0)
+                {
+                    // The comparison loads the initial environment as well, which would show up in the availability and the latency of the probe.
+                    final SearchEngineComparison.Result comparison;
+                    probe.pause();
+                    try
+                    {
+                        comparison = scenario.compareSearchEngines(SEARCH_TERM);
+                    }
+                    finally
+                    {
+                        probe.resume();
+                    }
+                    STEP("Search engine comparison written to " + comparison.write("search-engine-comparison").toAbsolutePath());
+                    STEP("Query classes returning a different number of results: " + comparison.getTotalItemsMismatches());
+                }
             }
 
             final long documentsCount = elasticsearch.getIndexedDocumentCount();
@@ -119,7 +155,16 @@ public class FromSolrUpgradeTest
                     FILE_UPLOADED_AFTER_SWITCHING_TO_ELASTICSEARCH);
 
             final Stats availabilityStats = probe.stop();
+            STEP("Slowest waits:\n" + Utils.describeSlowestWaits(10));
+            searchEngineStats.stop();
+            STEP("Search engine statistics written to " + searchEngineStats.write("from-solr-upgrade").toAbsolutePath());
+            STEP("Search API availability timeline written to " + scenario.getAvailabilityTimeline().write("from-solr-upgrade").toAbsolutePath());
+            STEP("Search API availability during the upgrade: " + availabilityStats);
             Assert.assertTrue(availabilityStats.getSuccessRatioInPercents() >= 99, "Search was unavailable. Stats: " + availabilityStats);
+            cfg.getSearchLatencySloP99().ifPresent(slo -> Assert.assertTrue(availabilityStats.getP99().compareTo(slo) <= 0,
+                    "Search p99 latency exceeded " + slo.toMillis() + "ms. Stats: " + availabilityStats));
+            cfg.getSearchLatencySloP999().ifPresent(slo -> Assert.assertTrue(availabilityStats.getP999().compareTo(slo) <= 0,
+                    "Search p99.9 latency exceeded " + slo.toMillis() + "ms. Stats: " + availabilityStats));
         }
     }
 }
@@ -14,6 +14,7 @@ class LegacyAcsUpgradeScenario implements AutoCloseable
     private final Elasticsearch elasticsearch;
     private final ACSEnv mirroredEnv;
     private final Path sharedContentStorePath;
+    private final AvailabilityTimeline availabilityTimeline = new AvailabilityTimeline();
 
     LegacyAcsUpgradeScenario(Config cfg)
     {
@@ -24,28 +25,39 @@ class LegacyAcsUpgradeScenario implements AutoCloseable
 
         initialEnv = new ACSEnv52(cfg, initialEnvNetwork);
         initialEnv.setContentStoreHostPath(sharedContentStorePath);
+        initialEnv.setAvailabilityTimeline(availabilityTimeline);
 
         elasticsearch = new Elasticsearch(cfg, mirroredEnvNetwork, initialEnvNetwork);
 
         mirroredEnv = new ACSEnv(cfg, mirroredEnvNetwork, "elasticsearch");
         mirroredEnv.setContentStoreHostPath(sharedContentStorePath);
+        mirroredEnv.setAvailabilityTimeline(availabilityTimeline);
+    }
+
+    /** @return The availability of the search API, with a phase for every step of the scenario. */
+    public AvailabilityTimeline getAvailabilityTimeline()
+    {
+        return availabilityTimeline;
     }
 
     public LegacyACSEnv startLegacyEnv()
     {
+        availabilityTimeline.markPhase("start-legacy-env");
         initialEnv.start();
         return initialEnv;
     }
 
     public Elasticsearch startElasticsearch()
     {
+        availabilityTimeline.markPhase("start-elasticsearch");
         elasticsearch.start();
         return elasticsearch;
     }
 
     public ACSEnv startMirroredEnvWitElasticsearchBasedSearchService()
     {
-        mirroredEnv.setMetadataDumpToRestore(initialEnv.getMetadataDump());
+        availabilityTimeline.markPhase("start-mirrored-env");
+        mirroredEnv.setMetadataDumpToRestore(initialEnv.dumpMetadata());
         mirroredEnv.start();
 
         uploadLicence(mirroredEnv);
@@ -63,8 +75,11 @@ class LegacyAcsUpgradeScenario implements AutoCloseable
 
     public ACSEnv upgradeLegacyEnvironmentToCurrent()
     {
+        availabilityTimeline.markPhase("upgrade-legacy-env");
         final ACSEnv upgradedEnv = initialEnv.upgradeToCurrent();
+        upgradedEnv.setAvailabilityTimeline(availabilityTimeline);
         upgradedEnv.start();
+        availabilityTimeline.markPhase("upgraded-env-started");
 
         uploadLicence(upgradedEnv);
 
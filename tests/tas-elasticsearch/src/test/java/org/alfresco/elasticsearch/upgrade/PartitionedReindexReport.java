@@ -0,0 +1,102 @@
+package org.alfresco.elasticsearch.upgrade;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The outcome of a reindex split into several id ranges, each one handled by its own re-indexing container.
+ */
+class PartitionedReindexReport
+{
+    private final List<Partition> partitions;
+    private final Duration wallClock;
+
+    PartitionedReindexReport(List<Partition> partitions, Duration wallClock)
+    {
+        this.partitions = List.copyOf(partitions);
+        this.wallClock = wallClock;
+    }
+
+    public List<Partition> getPartitions()
+    {
+        return partitions;
+    }
+
+    public Duration getWallClock()
+    {
+        return wallClock;
+    }
+
+    public boolean isSuccessful()
+    {
+        return partitions.stream().allMatch(Partition::isSuccessful);
+    }
+
+    public long getNodeCount()
+    {
+        return partitions.stream().mapToLong(Partition::nodeCount).sum();
+    }
+
+    public double getNodesPerSecond()
+    {
+        return perSecond(getNodeCount(), wallClock);
+    }
+
+    /**
+     * Estimate the speedup over running the same partitions one after the other, i.e. the sum of the partition durations divided by the wall-clock time. This assumes a
+     * partition would take as long on its own as it did next to the others, so it overestimates the speedup once the database or the search engine is saturated. Comparing
+     * {@link #getNodesPerSecond()} with a single partition run gives the real figure.
+     */
+    public double getEstimatedSpeedup()
+    {
+        final long sequentialMillis = partitions.stream().mapToLong(p -> p.duration().toMillis()).sum();
+        return wallClock.isZero() ? 1 : (double) sequentialMillis / wallClock.toMillis();
+    }
+
+    @Override
+    public String toString()
+    {
+        return partitions.stream().map(Partition::toString).collect(Collectors.joining("\n", "", "\n"))
+                + "%d partitions reindexed %d nodes in %d ms (%.1f nodes/s), estimated speedup %.2fx".formatted(
+                        partitions.size(), getNodeCount(), wallClock.toMillis(), getNodesPerSecond(), getEstimatedSpeedup());
+    }
+
+    private static double perSecond(long count, Duration duration)
+    {
+        return duration.isZero() ? 0 : count * 1000.0 / duration.toMillis();
+    }
+
+    /**
+     * A single re-indexing container.
+     *
+     * @param fromId
+     *            The first node id of the range.
+     * @param toId
+     *            The last node id of the range.
+     * @param nodeCount
+     *            The number of nodes in the range.
+     * @param duration
+     *            The time between starting the container and it exiting.
+     * @param exitCode
+     *            The exit code of the container.
+     */
+    record Partition(long fromId, long toId, long nodeCount, Duration duration, long exitCode)
+    {
+        public boolean isSuccessful()
+        {
+            return exitCode == 0;
+        }
+
+        public double nodesPerSecond()
+        {
+            return perSecond(nodeCount, duration);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "[%d, %d]: %d nodes in %d ms (%.1f nodes/s), exit code %d".formatted(fromId, toId, nodeCount, duration.toMillis(), nodesPerSecond(), exitCode);
+        }
+    }
+}
@@ -40,16 +40,9 @@ import org.apache.http.util.EntityUtils;
 class RepoHttpClient
 {
     private static final int HTTP_TIMEOUT_MS = 5_000;
+    private static final int DEFAULT_MAX_CONNECTIONS = 10;
 
-    final CloseableHttpClient client = HttpClientBuilder.create()
-            .setDefaultRequestConfig(
-                    RequestConfig.copy(RequestConfig.DEFAULT)
-                            .setConnectionRequestTimeout(HTTP_TIMEOUT_MS)
-                            .setSocketTimeout(HTTP_TIMEOUT_MS)
-                            .setConnectionRequestTimeout(HTTP_TIMEOUT_MS)
-                            .setRedirectsEnabled(false)
-                            .build())
-            .build();
+    final CloseableHttpClient client;
 
     final Gson gson = new Gson();
     private final URI searchApiUri;
@@ -60,6 +53,26 @@ class RepoHttpClient
 
     RepoHttpClient(final URI repoBaseUri)
     {
+        this(repoBaseUri, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * @param maxConnections
+     *            The size of the connection pool. All the requests go to the same host, so it also limits the number of concurrent requests.
+     */
+    RepoHttpClient(final URI repoBaseUri, int maxConnections)
+    {
+        client = HttpClientBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultRequestConfig(
+                        RequestConfig.copy(RequestConfig.DEFAULT)
+                                .setConnectionRequestTimeout(HTTP_TIMEOUT_MS)
+                                .setSocketTimeout(HTTP_TIMEOUT_MS)
+                                .setConnectionRequestTimeout(HTTP_TIMEOUT_MS)
+                                .setRedirectsEnabled(false)
+                                .build())
+                .build();
         searchApiUri = repoBaseUri.resolve("/alfresco/api/-default-/public/search/versions/1/search");
         fileUploadApiUri = repoBaseUri.resolve("/alfresco/api/-default-/public/alfresco/versions/1/nodes/-my-/children");
         searchServiceAdminAppUri = repoBaseUri.resolve("/alfresco/s/enterprise/admin/admin-searchservice");
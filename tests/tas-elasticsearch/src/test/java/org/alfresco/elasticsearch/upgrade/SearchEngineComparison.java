@@ -0,0 +1,236 @@
+package org.alfresco.elasticsearch.upgrade;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import org.alfresco.elasticsearch.benchmark.LoadRepoHttpClient;
+import org.alfresco.elasticsearch.benchmark.QueryLoadDriver;
+import org.alfresco.elasticsearch.utility.BenchmarkReport;
+
+/**
+ * Replays the same query workload against several environments, at the same concurrency, and compares the latency and the number of results of every class of query.
+ * <p>
+ * The environments are expected to hold the same content, e.g. the Solr based and the Elasticsearch based environments of an {@link UpgradeScenario}, so that a difference
+ * in the number of results points at a difference in the indexing or in the query translation. The query classes run one after the other, and every class runs against
+ * one environment after the other, so that two environments never compete for the same host.
+ */
+class SearchEngineComparison
+{
+    private static final String USER_NAME = "searchcomparison";
+    private static final String USER_PASSWORD = "searchcomparison";
+
+    /**
+     * A class of queries.
+     *
+     * @param name
+     *            The name of the class in the report.
+     * @param body
+     *            The body of the search API requests.
+     * @param asUser
+     *            Whether to run the queries as a regular user rather than as the administrator, so that the results have to be filtered by permissions.
+     */
+    record QueryClass(String name, JsonObject body, boolean asUser)
+    {}
+
+    private final Map<String, URI> environments;
+    private List<QueryClass> workload = defaultWorkload("alfresco");
+    private int concurrency = 8;
+    private int warmUpRequests = 50;
+    private int requests = 500;
+
+    /**
+     * @param environments
+     *            The base URI of the repository of every environment, by name.
+     */
+    SearchEngineComparison(Map<String, URI> environments)
+    {
+        this.environments = new LinkedHashMap<>(environments);
+    }
+
+    SearchEngineComparison withWorkload(List<QueryClass> workload)
+    {
+        this.workload = List.copyOf(workload);
+        return this;
+    }
+
+    SearchEngineComparison withConcurrency(int concurrency)
+    {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * @param warmUpRequests
+     *            The number of requests of every class sent before measuring, to warm up the caches of the search engine and of the repository.
+     * @param requests
+     *            The number of requests of every class measured.
+     */
+    SearchEngineComparison withRequests(int warmUpRequests, int requests)
+    {
+        this.warmUpRequests = warmUpRequests;
+        this.requests = requests;
+        return this;
+    }
+
+    /**
+     * The default workload: full text, PATH, facets, sorting and permission filtered queries.
+     *
+     * @param term
+     *            A word found in the content of the documents.
+     */
+    static List<QueryClass> defaultWorkload(String term)
+    {
+        final List<QueryClass> workload = new ArrayList<>();
+        workload.add(new QueryClass("full-text", body("TEXT:" + term), false));
+        workload.add(new QueryClass("path", body("PATH:\"/app:company_home/app:user_homes//*\" AND TYPE:\"cm:content\""), false));
+
+        final JsonObject facets = body("TYPE:\"cm:content\"");
+        final JsonArray facetFields = new JsonArray();
+        for (String field : List.of("content.mimetype", "creator"))
+        {
+            final JsonObject facetField = new JsonObject();
+            facetField.addProperty("field", field);
+            facetFields.add(facetField);
+        }
+        final JsonObject facetFieldsObject = new JsonObject();
+        facetFieldsObject.add("facets", facetFields);
+        facets.add("facetFields", facetFieldsObject);
+        workload.add(new QueryClass("facets", facets, false));
+
+        final JsonObject sorted = body("TYPE:\"cm:content\"");
+        final JsonObject sortByName = new JsonObject();
+        sortByName.addProperty("type", "FIELD");
+        sortByName.addProperty("field", "cm:name");
+        sortByName.addProperty("ascending", true);
+        final JsonArray sort = new JsonArray();
+        sort.add(sortByName);
+        sorted.add("sort", sort);
+        workload.add(new QueryClass("sort", sorted, false));
+
+        workload.add(new QueryClass("permissions", body("TYPE:\"cm:content\""), true));
+        return workload;
+    }
+
+    private static JsonObject body(String aftsQuery)
+    {
+        final JsonObject query = new JsonObject();
+        query.addProperty("language", "afts");
+        query.addProperty("query", aftsQuery);
+        final JsonObject body = new JsonObject();
+        body.add("query", query);
+        return body;
+    }
+
+    /**
+     * Create the regular user running the permission filtered queries. The user is created by {@link #run()} as well, but its person node and home folder are then only in the
+     * environments at that point, so call this before an environment is copied from another one.
+     *
+     * @param repoBaseUri
+     *            The base URI of the repository.
+     */
+    static void createUser(URI repoBaseUri) throws IOException
+    {
+        try (LoadRepoHttpClient admin = new LoadRepoHttpClient(repoBaseUri, 1))
+        {
+            createUser(admin, repoBaseUri.toString());
+        }
+    }
+
+    private static void createUser(LoadRepoHttpClient admin, String environment) throws IOException
+    {
+        final LoadRepoHttpClient.NodeResult user = admin.createPerson(USER_NAME, USER_PASSWORD);
+        if (!user.isSuccessful() && user.status() != 409)
+        {
+            throw new IOException("Failed to create the user `" + USER_NAME + "` in " + environment + ", HTTP status " + user.status() + ".");
+        }
+    }
+
+    /** Run the workload against every environment. */
+    Result run() throws IOException, InterruptedException
+    {
+        final Map<String, Map<String, QueryLoadDriver.Result>> results = new LinkedHashMap<>();
+        final List<LoadRepoHttpClient> clients = new ArrayList<>();
+        try
+        {
+            final Map<String, LoadRepoHttpClient[]> environmentClients = new LinkedHashMap<>();
+            for (Map.Entry<String, URI> environment : environments.entrySet())
+            {
+                final LoadRepoHttpClient admin = new LoadRepoHttpClient(environment.getValue(), concurrency);
+                clients.add(admin);
+                createUser(admin, environment.getKey());
+                final LoadRepoHttpClient regularUser = new LoadRepoHttpClient(environment.getValue(), concurrency, USER_NAME, USER_PASSWORD);
+                clients.add(regularUser);
+                environmentClients.put(environment.getKey(), new LoadRepoHttpClient[]{admin, regularUser});
+            }
+
+            for (QueryClass queryClass : workload)
+            {
+                final QueryLoadDriver.QueryCall query = client -> client.search(queryClass.body());
+                final Map<String, QueryLoadDriver.Result> classResults = new LinkedHashMap<>();
+                for (Map.Entry<String, LoadRepoHttpClient[]> environment : environmentClients.entrySet())
+                {
+                    final QueryLoadDriver driver = new QueryLoadDriver(environment.getValue()[queryClass.asUser() ? 1 : 0]).withConcurrency(concurrency);
+                    driver.run(query, warmUpRequests);
+                    classResults.put(environment.getKey(), driver.run(query, requests));
+                }
+                results.put(queryClass.name(), classResults);
+            }
+        }
+        finally
+        {
+            for (LoadRepoHttpClient client : clients)
+            {
+                client.close();
+            }
+        }
+        return new Result(results);
+    }
+
+    /**
+     * The measurements of every class of queries, by environment.
+     */
+    record Result(Map<String, Map<String, QueryLoadDriver.Result>> classes)
+    {
+        /** @return One row per class of queries, with the measurements of the environments side by side. */
+        List<Map<String, Object>> toRows()
+        {
+            final List<Map<String, Object>> rows = new ArrayList<>();
+            classes.forEach((queryClass, byEnvironment) -> {
+                final Map<String, Object> row = new LinkedHashMap<>();
+                row.put("queryClass", queryClass);
+                byEnvironment.forEach((environment, result) -> row.putAll(result.toColumns(environment)));
+                final long distinctTotals = byEnvironment.values().stream().mapToLong(QueryLoadDriver.Result::totalItems).distinct().count();
+                row.put("sameTotalItems", distinctTotals == 1);
+                rows.add(row);
+            });
+            return rows;
+        }
+
+        /**
+         * Write the rows to a {@link BenchmarkReport}.
+         *
+         * @return The path of the JSON report.
+         */
+        Path write(String name)
+        {
+            final BenchmarkReport report = new BenchmarkReport(name);
+            toRows().forEach(report::addRow);
+            return report.write();
+        }
+
+        /** @return The classes of queries which didn't return the same number of results in every environment. */
+        List<String> getTotalItemsMismatches()
+        {
+            return toRows().stream().filter(row -> !(boolean) row.get("sameTotalItems")).map(row -> Objects.toString(row.get("queryClass"))).toList();
+        }
+    }
+}
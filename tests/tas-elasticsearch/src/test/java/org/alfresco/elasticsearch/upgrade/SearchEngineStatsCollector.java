@@ -0,0 +1,318 @@
+package org.alfresco.elasticsearch.upgrade;
+
+import static org.alfresco.tas.SystemPropertyHelper.getSystemProperty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Samples the statistics of the search engine on an interval, so that the indexing throughput of a scenario can be correlated with the heap use, the segment merges and the
+ * bulk rejections of the search engine.
+ * <p>
+ * Every sample reads {@code _nodes/stats}, {@code _cat/indices} and {@code _cat/segments}. The responses are parsed as streams, only the numbers needed are kept. The samples
+ * are written as CSV and JSON to -Dupgrade.stats.dir (target/search-engine-stats by default).
+ */
+class SearchEngineStatsCollector implements AutoCloseable
+{
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final String NODES_STATS_PATH = "/_nodes/stats/jvm,indices,thread_pool?filter_path="
+            + "nodes.*.jvm.mem.heap_used_in_bytes,nodes.*.jvm.mem.heap_max_in_bytes,"
+            + "nodes.*.indices.indexing.index_total,nodes.*.indices.merges.current,nodes.*.indices.merges.total_time_in_millis,"
+            + "nodes.*.indices.refresh.total,nodes.*.indices.segments.count,"
+            + "nodes.*.thread_pool.write.queue,nodes.*.thread_pool.write.rejected,nodes.*.thread_pool.search.rejected";
+
+    private final StreamOpener api;
+    private final String indexName;
+    private final ScheduledExecutorService scheduler;
+    private final List<Map<String, Object>> samples = new CopyOnWriteArrayList<>();
+    private final AtomicLong failedSamples = new AtomicLong();
+    private Map<String, Double> previousNodeStats;
+    private long previousSampleNanos;
+    private long firstSampleEpochMillis;
+
+    /** Opens the response of a GET request to the search engine. */
+    @FunctionalInterface
+    interface StreamOpener
+    {
+        InputStream open(String path) throws IOException;
+    }
+
+    SearchEngineStatsCollector(StreamOpener api, String indexName)
+    {
+        this.api = Objects.requireNonNull(api);
+        this.indexName = Objects.requireNonNull(indexName);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "search-engine-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start sampling.
+     *
+     * @param interval
+     *            The time between two samples.
+     * @return This collector.
+     */
+    SearchEngineStatsCollector start(Duration interval)
+    {
+        scheduler.scheduleAtFixedRate(this::sampleQuietly, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /** Stop sampling, the samples taken so far are kept. */
+    void stop()
+    {
+        scheduler.shutdownNow();
+        try
+        {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        stop();
+    }
+
+    List<Map<String, Object>> getSamples()
+    {
+        return List.copyOf(samples);
+    }
+
+    long getFailedSamples()
+    {
+        return failedSamples.get();
+    }
+
+    /**
+     * Write the samples as CSV and JSON.
+     *
+     * @param name
+     *            The name of the report files.
+     * @return The path of the JSON report.
+     */
+    Path write(String name)
+    {
+        final Path directory = Path.of(getSystemProperty("upgrade.stats.dir", "target/search-engine-stats"));
+        final Path jsonReport = directory.resolve(name + ".json");
+        final List<Map<String, Object>> rows = getSamples();
+        try
+        {
+            Files.createDirectories(directory);
+            try (Writer writer = Files.newBufferedWriter(jsonReport, StandardCharsets.UTF_8))
+            {
+                GSON.toJson(Map.of("index", indexName, "failedSamples", failedSamples.get(), "samples", rows), writer);
+            }
+            final Set<String> columns = new LinkedHashSet<>();
+            rows.forEach(row -> columns.addAll(row.keySet()));
+            final StringBuilder csv = new StringBuilder(String.join(",", columns)).append('\n');
+            rows.forEach(row -> csv.append(columns.stream().map(column -> Objects.toString(row.get(column), "")).collect(Collectors.joining(","))).append('\n'));
+            Files.writeString(directory.resolve(name + ".csv"), csv, StandardCharsets.UTF_8);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Failed to write the `" + name + "` search engine statistics.", e);
+        }
+        return jsonReport;
+    }
+
+    private void sampleQuietly()
+    {
+        try
+        {
+            sample();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // The search engine may be restarting or not started yet, the gap shows in the samples.
+            failedSamples.incrementAndGet();
+        }
+    }
+
+    private synchronized void sample() throws IOException
+    {
+        final long now = System.nanoTime();
+        final Map<String, Double> nodeStats = new HashMap<>();
+        try (JsonReader reader = open(NODES_STATS_PATH))
+        {
+            // The stats are summed over the nodes, by dropping the node id from the path.
+            readNumbers(reader, "", (path, value) -> nodeStats.merge(path.replaceFirst("^nodes\\.[^.]+\\.", ""), value, Double::sum));
+        }
+        final Map<String, Object> index = readIndex();
+        final long[] segments = readSegments();
+
+        final Map<String, Object> row = new LinkedHashMap<>();
+        final long epochMillis = System.currentTimeMillis();
+        if (samples.isEmpty())
+        {
+            firstSampleEpochMillis = epochMillis;
+        }
+        row.put("time", Instant.ofEpochMilli(epochMillis).toString());
+        row.put("offsetSeconds", (epochMillis - firstSampleEpochMillis) / 1000);
+        row.put("docs", index.get("docs.count"));
+        row.put("storeBytes", index.get("store.size"));
+        row.put("segments", segments[0]);
+        row.put("segmentBytes", segments[1]);
+        row.put("indexingPerSecond", rate(nodeStats, "indices.indexing.index_total", now));
+        row.put("refreshesPerSecond", rate(nodeStats, "indices.refresh.total", now));
+        row.put("mergesCurrent", asLong(nodeStats.get("indices.merges.current")));
+        row.put("mergeMsPerSecond", rate(nodeStats, "indices.merges.total_time_in_millis", now));
+        row.put("heapUsedPercent", heapUsedPercent(nodeStats));
+        row.put("writeQueue", asLong(nodeStats.get("thread_pool.write.queue")));
+        row.put("writeRejected", asLong(nodeStats.get("thread_pool.write.rejected")));
+        row.put("writeRejectedPerSecond", rate(nodeStats, "thread_pool.write.rejected", now));
+        row.put("searchRejected", asLong(nodeStats.get("thread_pool.search.rejected")));
+        samples.add(row);
+
+        previousNodeStats = nodeStats;
+        previousSampleNanos = now;
+    }
+
+    /** @return The docs.count and store.size of the index, as reported by _cat/indices. */
+    private Map<String, Object> readIndex() throws IOException
+    {
+        final Map<String, Object> index = new HashMap<>();
+        try (JsonReader reader = open("/_cat/indices?format=json&bytes=b&h=index,docs.count,store.size"))
+        {
+            reader.beginArray();
+            while (reader.hasNext())
+            {
+                final Map<String, String> row = readStringFields(reader);
+                if (indexName.equals(row.get("index")))
+                {
+                    index.put("docs.count", parseLong(row.get("docs.count")));
+                    index.put("store.size", parseLong(row.get("store.size")));
+                }
+            }
+            reader.endArray();
+        }
+        return index;
+    }
+
+    /** @return The number and the total size of the segments of the index, as reported by _cat/segments. */
+    private long[] readSegments() throws IOException
+    {
+        final long[] segments = new long[2];
+        try (JsonReader reader = open("/_cat/segments?format=json&bytes=b&h=index,size"))
+        {
+            reader.beginArray();
+            while (reader.hasNext())
+            {
+                final Map<String, String> row = readStringFields(reader);
+                if (indexName.equals(row.get("index")))
+                {
+                    segments[0]++;
+                    final Long size = parseLong(row.get("size"));
+                    segments[1] += size == null ? 0 : size;
+                }
+            }
+            reader.endArray();
+        }
+        return segments;
+    }
+
+    private JsonReader open(String path) throws IOException
+    {
+        return new JsonReader(new InputStreamReader(api.open(path), StandardCharsets.UTF_8));
+    }
+
+    private Double rate(Map<String, Double> nodeStats, String path, long now)
+    {
+        if (previousNodeStats == null || !nodeStats.containsKey(path) || !previousNodeStats.containsKey(path))
+        {
+            return null;
+        }
+        final double seconds = (now - previousSampleNanos) / 1e9;
+        return seconds <= 0 ? null : Math.round((nodeStats.get(path) - previousNodeStats.get(path)) / seconds * 10) / 10.0;
+    }
+
+    private static Double heapUsedPercent(Map<String, Double> nodeStats)
+    {
+        final Double used = nodeStats.get("jvm.mem.heap_used_in_bytes");
+        final Double max = nodeStats.get("jvm.mem.heap_max_in_bytes");
+        return used == null || max == null || max == 0 ? null : Math.round(used * 1000 / max) / 10.0;
+    }
+
+    private static Long asLong(Double value)
+    {
+        return value == null ? null : value.longValue();
+    }
+
+    private static Long parseLong(String value)
+    {
+        return value == null || value.isEmpty() ? null : Long.parseLong(value);
+    }
+
+    /** Visit every number of a JSON value with its dotted path. */
+    private static void readNumbers(JsonReader reader, String path, BiConsumer<String, Double> consumer) throws IOException
+    {
+        switch (reader.peek())
+        {
+        case BEGIN_OBJECT -> {
+            reader.beginObject();
+            while (reader.hasNext())
+            {
+                final String name = reader.nextName();
+                readNumbers(reader, path.isEmpty() ? name : path + "." + name, consumer);
+            }
+            reader.endObject();
+        }
+        case NUMBER -> consumer.accept(path, reader.nextDouble());
+        default -> reader.skipValue();
+        }
+    }
+
+    /** Read an object of the _cat APIs, whose values are all strings. */
+    private static Map<String, String> readStringFields(JsonReader reader) throws IOException
+    {
+        final Map<String, String> fields = new HashMap<>();
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            final String name = reader.nextName();
+            if (reader.peek() == JsonToken.STRING || reader.peek() == JsonToken.NUMBER)
+            {
+                fields.put(name, reader.nextString());
+            }
+            else
+            {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return fields;
+    }
+}
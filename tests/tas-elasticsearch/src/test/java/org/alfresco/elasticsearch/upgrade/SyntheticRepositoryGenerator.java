@@ -0,0 +1,216 @@
+package org.alfresco.elasticsearch.upgrade;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Bulk-loads a synthetic repository straight into the database of an environment, for the scenarios which need far more nodes than can be uploaded through the REST API in a
+ * reasonable time.
+ * <p>
+ * The nodes are generated by SQL inside the database (see synthetic-repository.sql), as clones of a template document uploaded through the REST API and of its parent folder.
+ * A root folder is created next to the template, with a tree of folders below it. Every leaf folder gets the same number of documents. A share of the documents is also filed
+ * in a second leaf folder through a secondary association, and every top level folder gets its own copies of the ACLs of the template folder.
+ * <p>
+ * The whole script runs as a single database transaction, so everything is committed at once. The nodes are spread over alf_transaction rows of a fixed number of nodes, which
+ * the trackers and the re-indexing pick up as they would the transactions of a bulk import.
+ * <p>
+ * Only folders, documents, secondary associations and ACLs are generated: there are no sites, versions, tags or categories.
+ * <p>
+ * The content of the documents is a set of plain text samples written into the content store of the environment, which must be bound to a host path. The samples don't contain
+ * the words the scenarios search for.
+ */
+class SyntheticRepositoryGenerator
+{
+    private static final String SCRIPT = "synthetic-repository.sql";
+    private static final String[] WORDS = {"alfresco", "search", "index", "content", "document", "repository", "folder", "migration", "archive", "record", "policy",
+            "invoice", "contract", "report", "budget", "meeting", "project", "release", "customer", "supplier"};
+
+    private final BaseACSEnv env;
+    private int folderDepth = 3;
+    private int foldersPerLevel = 10;
+    private int documentsPerFolder = 100;
+    private int secondaryAssociationsPercent = 10;
+    private int nodesPerTransaction = 1000;
+    private int contentSamples = 64;
+    private int contentSizeBytes = 4 * 1024;
+
+    SyntheticRepositoryGenerator(BaseACSEnv env)
+    {
+        this.env = Objects.requireNonNull(env);
+    }
+
+    /**
+     * @param depth
+     *            The number of levels of folders below the root folder, 0 to generate the documents in the root folder.
+     * @param foldersPerLevel
+     *            The number of sub-folders of every folder.
+     */
+    SyntheticRepositoryGenerator withFolderTree(int depth, int foldersPerLevel)
+    {
+        this.folderDepth = depth;
+        this.foldersPerLevel = foldersPerLevel;
+        return this;
+    }
+
+    SyntheticRepositoryGenerator withDocumentsPerFolder(int documentsPerFolder)
+    {
+        this.documentsPerFolder = documentsPerFolder;
+        return this;
+    }
+
+    /**
+     * @param percent
+     *            The share of the documents also filed in a second folder.
+     */
+    SyntheticRepositoryGenerator withSecondaryAssociations(int percent)
+    {
+        this.secondaryAssociationsPercent = percent;
+        return this;
+    }
+
+    SyntheticRepositoryGenerator withNodesPerTransaction(int nodesPerTransaction)
+    {
+        this.nodesPerTransaction = nodesPerTransaction;
+        return this;
+    }
+
+    /**
+     * @param samples
+     *            The number of distinct content files, shared by the documents.
+     * @param sizeBytes
+     *            The size of every content file.
+     */
+    SyntheticRepositoryGenerator withContent(int samples, int sizeBytes)
+    {
+        this.contentSamples = samples;
+        this.contentSizeBytes = sizeBytes;
+        return this;
+    }
+
+    /** @return The number of documents a call to {@link #generate(UUID, String)} creates. */
+    long getDocumentCount()
+    {
+        return (long) Math.pow(foldersPerLevel, folderDepth) * documentsPerFolder;
+    }
+
+    /**
+     * Generate the repository.
+     *
+     * @param templateDocument
+     *            The id of a document, the generated documents and folders are cloned from it and from its parent folder.
+     * @param name
+     *            The name of the root folder, also used as the prefix of the document names. Only letters and digits are allowed.
+     * @return What was generated.
+     */
+    Result generate(UUID templateDocument, String name)
+    {
+        if (!name.matches("[A-Za-z0-9]+"))
+        {
+            throw new IllegalArgumentException("Only letters and digits are allowed in `" + name + "`.");
+        }
+        final Path contentStore = env.getContentStoreHostPath();
+        if (contentStore == null)
+        {
+            throw new IllegalStateException("The content store of the environment must be bound to a host path.");
+        }
+
+        final long start = System.nanoTime();
+        final StringBuilder script = new StringBuilder()
+                .append("CREATE TEMP TABLE params AS SELECT '").append(templateDocument).append("'::text AS template_uuid, '").append(name).append("'::text AS name, ")
+                .append(folderDepth).append(" AS depth, ")
+                .append(foldersPerLevel).append(" AS folders_per_level, ")
+                .append(documentsPerFolder).append(" AS documents_per_folder, ")
+                .append(secondaryAssociationsPercent).append(" AS secondary_percent, ")
+                .append(nodesPerTransaction).append(" AS batch_size;\n")
+                .append("CREATE TEMP TABLE samples (sample int PRIMARY KEY, content_url text NOT NULL, content_size bigint NOT NULL, url_id bigint);\n");
+        final Random random = new Random(name.hashCode());
+        for (int i = 0; i < contentSamples; i++)
+        {
+            final String relativePath = "synthetic/" + name + "/" + i + ".txt";
+            final byte[] content = generateContent(random);
+            write(contentStore.resolve("contentstore").resolve(relativePath), content);
+            script.append("INSERT INTO samples (sample, content_url, content_size) VALUES (").append(i).append(", 'store://").append(relativePath).append("', ")
+                    .append(content.length).append(");\n");
+        }
+        script.append(readScript());
+
+        final String[] counts = env.runSqlScript(script.toString()).strip().split(",");
+        final Result result = new Result(Long.parseLong(counts[0]), Long.parseLong(counts[1]), Long.parseLong(counts[2]), Long.parseLong(counts[3]),
+                Long.parseLong(counts[4]), Duration.ofNanos(System.nanoTime() - start));
+        env.getAvailabilityTimeline().markPhase("synthetic-repository-generated");
+        return result;
+    }
+
+    private byte[] generateContent(Random random)
+    {
+        final StringBuilder text = new StringBuilder(contentSizeBytes + 16);
+        while (text.length() < contentSizeBytes)
+        {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(10) == 0 ? ".\n" : " ");
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void write(Path file, byte[] content)
+    {
+        try
+        {
+            Files.createDirectories(file.getParent());
+            Files.write(file, content);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Failed to write the content `" + file + "`.", e);
+        }
+    }
+
+    private static String readScript()
+    {
+        try (InputStream script = SyntheticRepositoryGenerator.class.getResourceAsStream(SCRIPT))
+        {
+            return new String(Objects.requireNonNull(script, SCRIPT).readAllBytes(), StandardCharsets.UTF_8);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Failed to read `" + SCRIPT + "`.", e);
+        }
+    }
+
+    /**
+     * What was generated.
+     *
+     * @param folders
+     *            The number of folders, including the root folder.
+     * @param documents
+     *            The number of documents.
+     * @param secondaryAssociations
+     *            The number of documents filed in a second folder.
+     * @param acls
+     *            The number of distinct ACLs of the generated nodes.
+     * @param transactions
+     *            The number of alf_transaction rows the nodes were spread over.
+     * @param duration
+     *            The time taken, including writing the content.
+     */
+    record Result(long folders, long documents, long secondaryAssociations, long acls, long transactions, Duration duration)
+    {
+        double getNodesPerSecond()
+        {
+            return duration.isZero() ? 0 : (folders + documents) * 1000.0 / duration.toMillis();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Generated %d folders, %d documents, %d secondary associations, %d ACLs in %d transactions in %d ms (%.0f nodes/s)"
+                    .formatted(folders, documents, secondaryAssociations, acls, transactions, duration.toMillis(), getNodesPerSecond());
+        }
+    }
+}
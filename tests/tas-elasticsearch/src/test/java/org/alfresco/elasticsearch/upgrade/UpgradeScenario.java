@@ -3,20 +3,31 @@ package org.alfresco.elasticsearch.upgrade;
 import static org.alfresco.elasticsearch.upgrade.Utils.createNetwork;
 import static org.alfresco.elasticsearch.upgrade.Utils.createTempContentStoreDirectory;
 
+import java.io.IOException;
+import java.net.URI;
 import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.testcontainers.containers.GenericContainer;
 import org.testcontainers.containers.Network;
 
+import org.alfresco.tas.ImagePrewarmer;
+
 class UpgradeScenario implements AutoCloseable
 {
+    private final Config cfg;
     private final GenericContainer<?> solr6;
     private final ACSEnv initialEnv;
     private final Elasticsearch elasticsearch;
     private final ACSEnv mirroredEnv;
+    private final AvailabilityTimeline availabilityTimeline = new AvailabilityTimeline();
 
     public UpgradeScenario(Config cfg)
     {
+        this.cfg = cfg;
+        ImagePrewarmer.prewarm(cfg.getImages());
+
         // We need to keep these networks in stable lexicographical order. By default, UUIDs are used and in wrong order
         // attaching a running container to second network clears exposed ports.
         final Network initialEnvNetwork = createNetwork("B");
@@ -36,15 +47,24 @@ class UpgradeScenario implements AutoCloseable
                 .withNetworkAliases("solr6");
         initialEnv = new ACSEnv(cfg, initialEnvNetwork, "solr6");
         initialEnv.setContentStoreHostPath(sharedContentStorePath);
+        initialEnv.setAvailabilityTimeline(availabilityTimeline);
 
         elasticsearch = new Elasticsearch(cfg, mirroredEnvNetwork, initialEnvNetwork);
 
         mirroredEnv = new ACSEnv(cfg, mirroredEnvNetwork, "elasticsearch");
         mirroredEnv.setReadOnlyContentStoreHostPath(sharedContentStorePath);
+        mirroredEnv.setAvailabilityTimeline(availabilityTimeline);
+    }
+
+    /** @return The availability of the search API, with a phase for every step of the scenario. */
+    public AvailabilityTimeline getAvailabilityTimeline()
+    {
+        return availabilityTimeline;
     }
 
     public ACSEnv startInitialEnvWithSolrBasedSearchService()
     {
+        availabilityTimeline.markPhase("start-initial-env");
         solr6.start();
         initialEnv.start();
         return initialEnv;
@@ -52,22 +72,44 @@ class UpgradeScenario implements AutoCloseable
 
     public void shutdownSolr()
     {
+        availabilityTimeline.markPhase("shutdown-solr");
         solr6.stop();
     }
 
     public Elasticsearch startElasticsearch()
     {
+        availabilityTimeline.markPhase("start-elasticsearch");
         elasticsearch.start();
         return elasticsearch;
     }
 
     public ACSEnv startMirroredEnvWitElasticsearchBasedSearchService()
     {
-        mirroredEnv.setMetadataDumpToRestore(initialEnv.getMetadataDump());
+        availabilityTimeline.markPhase("start-mirrored-env");
+        mirroredEnv.setMetadataDumpToRestore(initialEnv.dumpMetadata());
         mirroredEnv.start();
         return mirroredEnv;
     }
 
+    /**
+     * Replay the same query workload against the Solr based initial environment and the Elasticsearch based mirrored environment, which must both be running.
+     *
+     * @param term
+     *            A word found in the content of the documents, for the full text queries.
+     */
+    public SearchEngineComparison.Result compareSearchEngines(String term) throws IOException, InterruptedException
+    {
+        availabilityTimeline.markPhase("compare-search-engines");
+        final Map<String, URI> environments = new LinkedHashMap<>();
+        environments.put("solr", initialEnv.getRepoBaseUri());
+        environments.put("elasticsearch", mirroredEnv.getRepoBaseUri());
+        return new SearchEngineComparison(environments)
+                .withWorkload(SearchEngineComparison.defaultWorkload(term))
+                .withConcurrency(cfg.getSearchComparisonConcurrency())
+                .withRequests(Math.max(1, cfg.getSearchComparisonRequests() / 10), cfg.getSearchComparisonRequests())
+                .run();
+    }
+
     @Override
     public void close()
     {
@@ -6,22 +6,39 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.PosixFilePermissions;
 import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
 
-import com.google.common.util.concurrent.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.testcontainers.containers.Network;
 
 class Utils
 {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Utils.class);
+
+    private static final long INITIAL_POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final Duration DEFAULT_MAX_POLL_INTERVAL = Duration.ofSeconds(1);
+    private static final Duration SLOW_WAIT = Duration.ofSeconds(10);
+    private static final List<WaitRecord> WAITS = new CopyOnWriteArrayList<>();
+
     public static Path createTempContentStoreDirectory()
     {
         try
         {
             final Path tempDir = Files.createTempDirectory("alf_data");
+            // The content store is created up front, so that content can be written into it from the host as well as by the repository.
+            final Path contentStore = Files.createDirectory(tempDir.resolve("contentstore"));
             if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
             {
                 Files.setPosixFilePermissions(tempDir, PosixFilePermissions.fromString("rwxrwxrwx"));
+                Files.setPosixFilePermissions(contentStore, PosixFilePermissions.fromString("rwxrwxrwx"));
             }
             return tempDir;
         }
@@ -31,6 +48,20 @@ class Utils
         }
     }
 
+    public static Path createTempFile(String prefix, String suffix)
+    {
+        try
+        {
+            final Path tempFile = Files.createTempFile(prefix, suffix);
+            tempFile.toFile().deleteOnExit();
+            return tempFile;
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Couldn't create a temp file.", e);
+        }
+    }
+
     public static Network createNetwork(String prefix)
     {
         return Network
@@ -41,16 +72,126 @@ class Utils
 
     public static void waitFor(String description, final Duration timeout, final BooleanSupplier condition)
     {
-        final RateLimiter rateLimiter = RateLimiter.create(5);
-        final long numberOfIterations = Math.max(1L, timeout.getSeconds() * (long) rateLimiter.getRate());
-        for (long i = 0; i < numberOfIterations; i++)
+        waitFor(description, timeout, DEFAULT_MAX_POLL_INTERVAL, condition, null);
+    }
+
+    public static void waitFor(String description, final Duration timeout, final BooleanSupplier condition, final WaitSignal signal)
+    {
+        waitFor(description, timeout, DEFAULT_MAX_POLL_INTERVAL, condition, signal);
+    }
+
+    /**
+     * Wait until the condition is met. The condition is checked straight away, and then with an exponential backoff from 10ms up to the maximum poll interval, so short waits
+     * end quickly and long waits don't flood the server. The intervals are jittered so that concurrent waits don't poll in lockstep.
+     *
+     * @param description
+     *            What is waited for, used in the error message and the wait records.
+     * @param timeout
+     *            How long to wait for, the condition is checked one last time at the deadline.
+     * @param maxPollInterval
+     *            The longest time between two checks.
+     * @param condition
+     *            The condition.
+     * @param signal
+     *            An optional signal which makes the condition be checked straight away, or null.
+     */
+    public static void waitFor(String description, final Duration timeout, final Duration maxPollInterval, final BooleanSupplier condition, final WaitSignal signal)
+    {
+        final long start = System.nanoTime();
+        final long deadline = start + timeout.toNanos();
+        long interval = Math.min(INITIAL_POLL_INTERVAL_NANOS, maxPollInterval.toNanos());
+        int checks = 0;
+        while (true)
         {
-            rateLimiter.acquire();
+            checks++;
             if (condition.getAsBoolean())
             {
+                recordWait(description, start, checks, true);
                 return;
             }
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+            {
+                break;
+            }
+            final long pause = Math.min(remaining, ThreadLocalRandom.current().nextLong(interval / 2, interval + 1));
+            try
+            {
+                if (signal != null && signal.await(pause, TimeUnit.NANOSECONDS))
+                {
+                    // Something happened, start polling quickly again.
+                    interval = INITIAL_POLL_INTERVAL_NANOS;
+                    continue;
+                }
+                if (signal == null)
+                {
+                    TimeUnit.NANOSECONDS.sleep(pause);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                recordWait(description, start, checks, false);
+                throw new RuntimeException("Interrupted while waiting for " + description + ".", e);
+            }
+            interval = Math.min(maxPollInterval.toNanos(), interval * 2);
         }
+        recordWait(description, start, checks, false);
         throw new RuntimeException("Failed to wait for " + description + ".");
     }
+
+    /** @return Every wait so far, in the order they ended. */
+    public static List<WaitRecord> getWaits()
+    {
+        return List.copyOf(WAITS);
+    }
+
+    /**
+     * @param limit
+     *            The number of waits to describe.
+     * @return The longest waits so far, one per line.
+     */
+    public static String describeSlowestWaits(int limit)
+    {
+        return WAITS.stream()
+                .sorted(Comparator.comparing(WaitRecord::duration).reversed())
+                .limit(limit)
+                .map(WaitRecord::toString)
+                .collect(Collectors.joining("\n"));
+    }
+
+    private static void recordWait(String description, long start, int checks, boolean satisfied)
+    {
+        final WaitRecord wait = new WaitRecord(description, Duration.ofNanos(System.nanoTime() - start), checks, satisfied);
+        WAITS.add(wait);
+        if (wait.duration().compareTo(SLOW_WAIT) >= 0 || !satisfied)
+        {
+            LOGGER.info("{}", wait);
+        }
+        else
+        {
+            LOGGER.debug("{}", wait);
+        }
+    }
+
+    /**
+     * The time spent waiting for a condition.
+     *
+     * @param description
+     *            What was waited for.
+     * @param duration
+     *            How long the wait took.
+     * @param checks
+     *            How many times the condition was checked.
+     * @param satisfied
+     *            Whether the condition was met, rather than the wait timing out.
+     */
+    record WaitRecord(String description, Duration duration, int checks, boolean satisfied)
+    {
+        @Override
+        public String toString()
+        {
+            return "Waited %d ms (%d checks, %s) for %s".formatted(duration.toMillis(), checks, satisfied ? "met" : "timed out", description);
+        }
+    }
 }
@@ -0,0 +1,90 @@
+package org.alfresco.elasticsearch.upgrade;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.model.Event;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.GenericContainer;
+
+/**
+ * A push notification which makes {@link Utils#waitFor} check its condition straight away instead of at the next poll, e.g. when a container stops or an index is refreshed.
+ * A signal raised while nobody is waiting is kept until the next wait.
+ */
+class WaitSignal implements AutoCloseable
+{
+    private Closeable subscription = () -> {};
+    private boolean pending;
+
+    static WaitSignal onContainerEvents(GenericContainer<?> container, String... events)
+    {
+        return onContainerEvents(List.of(container), events);
+    }
+
+    /**
+     * Create a signal raised by the Docker events of some containers.
+     *
+     * @param containers
+     *            Created containers.
+     * @param events
+     *            The Docker events to listen to, e.g. die or health_status.
+     * @return The signal, it has to be closed to stop listening to the events.
+     */
+    static WaitSignal onContainerEvents(Collection<? extends GenericContainer<?>> containers, String... events)
+    {
+        final WaitSignal signal = new WaitSignal();
+        signal.subscription = DockerClientFactory.instance().client()
+                .eventsCmd()
+                .withContainerFilter(containers.stream().map(GenericContainer::getContainerId).toArray(String[]::new))
+                .withEventFilter(events)
+                .exec(new ResultCallback.Adapter<Event>() {
+                    @Override
+                    public void onNext(Event event)
+                    {
+                        signal.signal();
+                    }
+                });
+        return signal;
+    }
+
+    synchronized void signal()
+    {
+        pending = true;
+        notifyAll();
+    }
+
+    /**
+     * Wait until the signal is raised or the timeout elapses.
+     *
+     * @return Whether the signal was raised.
+     */
+    synchronized boolean await(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long remaining;
+        while (!pending && (remaining = deadline - System.nanoTime()) > 0)
+        {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        final boolean raised = pending;
+        pending = false;
+        return raised;
+    }
+
+    @Override
+    public void close()
+    {
+        try
+        {
+            subscription.close();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Failed to stop listening to the events.", e);
+        }
+    }
+}
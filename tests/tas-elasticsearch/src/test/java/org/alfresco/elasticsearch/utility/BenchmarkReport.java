@@ -0,0 +1,99 @@
+package org.alfresco.elasticsearch.utility;
+
+import static org.alfresco.tas.SystemPropertyHelper.getSystemProperty;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Collects the results of a benchmark, one row per measured configuration, and writes them as CSV (for spreadsheets) and JSON (for comparing runs). The reports are written to
+ * -Dbenchmark.report.dir (target/benchmark-reports by default).
+ */
+public class BenchmarkReport
+{
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().serializeSpecialFloatingPointValues().create();
+
+    private final String name;
+    private final List<Map<String, Object>> rows = new ArrayList<>();
+
+    /**
+     * @param name
+     *            The name of the benchmark, used as the name of the report files.
+     */
+    public BenchmarkReport(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Add the results of a single configuration.
+     *
+     * @param row
+     *            The parameters and the measurements of the run, in column order.
+     */
+    public synchronized void addRow(Map<String, Object> row)
+    {
+        rows.add(new LinkedHashMap<>(row));
+    }
+
+    public synchronized List<Map<String, Object>> getRows()
+    {
+        return List.copyOf(rows);
+    }
+
+    /**
+     * Write the CSV and JSON reports.
+     *
+     * @return The path of the JSON report.
+     */
+    public synchronized Path write()
+    {
+        final Path reportDirectory = Path.of(getSystemProperty("benchmark.report.dir", "target/benchmark-reports"));
+        final Path jsonReport = reportDirectory.resolve(name + ".json");
+        try
+        {
+            Files.createDirectories(reportDirectory);
+            try (Writer writer = Files.newBufferedWriter(jsonReport, StandardCharsets.UTF_8))
+            {
+                GSON.toJson(Map.of("benchmark", name, "results", rows), writer);
+            }
+            Files.writeString(reportDirectory.resolve(name + ".csv"), toCsv(), StandardCharsets.UTF_8);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Failed to write the `" + name + "` benchmark report.", e);
+        }
+        return jsonReport;
+    }
+
+    private String toCsv()
+    {
+        final Set<String> columns = new LinkedHashSet<>();
+        rows.forEach(row -> columns.addAll(row.keySet()));
+
+        final StringBuilder csv = new StringBuilder(String.join(",", columns)).append('\n');
+        for (Map<String, Object> row : rows)
+        {
+            csv.append(columns.stream()
+                    .map(column -> Objects.toString(row.get(column), ""))
+                    .map(value -> value.contains(",") ? "\"" + value.replace("\"", "\"\"") + "\"" : value)
+                    .collect(Collectors.joining(",")))
+                    .append('\n');
+        }
+        return csv.toString();
+    }
+}
@@ -0,0 +1,110 @@
+package org.alfresco.elasticsearch.utility;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestResult;
+import org.testng.Reporter;
+
+/**
+ * Collects the time every eventually consistent query took to return the expected results, and writes a report per suite when the suite finishes. A test only passes or fails,
+ * whereas the convergence times show a regression of the indexing latency long before the tests start timing out.
+ * <p>
+ * Register it as a listener of the suite. Two reports are written to -Dbenchmark.report.dir (target/benchmark-reports by default):
+ * query-convergence-&lt;suite&gt; with a row per query and query-convergence-&lt;suite&gt;-summary with the distribution of every TestNG test of the suite.
+ */
+public class QueryConvergenceReport implements ISuiteListener
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryConvergenceReport.class);
+    private static final List<Convergence> CONVERGENCES = new CopyOnWriteArrayList<>();
+
+    private record Convergence(String suite, String test, String method, String query, int attempts, long nanos, boolean converged)
+    {}
+
+    /**
+     * Record how long a query took to converge. The suite, the test and the method are taken from the test running on the current thread.
+     *
+     * @param query
+     *            The query.
+     * @param attempts
+     *            The number of times the query was sent.
+     * @param nanos
+     *            The time between the first attempt and the last one.
+     * @param converged
+     *            Whether the last attempt returned the expected results, rather than the wait timing out.
+     */
+    public static void record(String query, int attempts, long nanos, boolean converged)
+    {
+        final ITestResult current = Reporter.getCurrentTestResult();
+        final String suite = current == null ? "" : current.getTestContext().getSuite().getName();
+        final String test = current == null ? "" : current.getTestContext().getName();
+        final String method = current == null ? "" : current.getMethod().getQualifiedName();
+        CONVERGENCES.add(new Convergence(suite, test, method, query, attempts, nanos, converged));
+    }
+
+    @Override
+    public void onFinish(ISuite suite)
+    {
+        final List<Convergence> convergences = CONVERGENCES.stream().filter(convergence -> convergence.suite().equals(suite.getName())).toList();
+        CONVERGENCES.removeAll(convergences);
+        if (convergences.isEmpty())
+        {
+            return;
+        }
+
+        final String name = "query-convergence-" + suite.getName().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "-");
+        final BenchmarkReport queries = new BenchmarkReport(name);
+        convergences.forEach(convergence -> {
+            final Map<String, Object> row = new LinkedHashMap<>();
+            row.put("test", convergence.test());
+            row.put("method", convergence.method());
+            row.put("query", convergence.query());
+            row.put("attempts", convergence.attempts());
+            row.put("convergenceMs", TimeUnit.NANOSECONDS.toMillis(convergence.nanos()));
+            row.put("converged", convergence.converged());
+            queries.addRow(row);
+        });
+        queries.write();
+
+        final BenchmarkReport summary = new BenchmarkReport(name + "-summary");
+        convergences.stream()
+                .collect(Collectors.groupingBy(Convergence::test, LinkedHashMap::new, Collectors.toList()))
+                .forEach((test, ofTest) -> summary.addRow(summarize(test, ofTest)));
+        final Map<String, Object> overall = summarize("*", convergences);
+        summary.addRow(overall);
+        LOGGER.info("Query convergence of `{}` written to {}: {}", suite.getName(), summary.write().toAbsolutePath(), overall);
+    }
+
+    private static Map<String, Object> summarize(String test, List<Convergence> convergences)
+    {
+        final Histogram millis = new Histogram(3);
+        convergences.stream().filter(Convergence::converged).forEach(convergence -> millis.recordValue(TimeUnit.NANOSECONDS.toMillis(convergence.nanos())));
+        final Map<String, Object> row = new LinkedHashMap<>();
+        row.put("test", test);
+        row.put("queries", convergences.size());
+        row.put("timedOut", convergences.stream().filter(convergence -> !convergence.converged()).count());
+        row.put("firstAttempt", convergences.stream().filter(convergence -> convergence.converged() && convergence.attempts() == 1).count());
+        row.put("p50Ms", millis.getValueAtPercentile(50));
+        row.put("p90Ms", millis.getValueAtPercentile(90));
+        row.put("p99Ms", millis.getValueAtPercentile(99));
+        row.put("maxMs", millis.getMaxValue());
+        row.put("totalWaitMs", convergences.stream().mapToLong(convergence -> TimeUnit.NANOSECONDS.toMillis(convergence.nanos())).sum());
+        row.put("slowestQuery", convergences.stream()
+                .filter(Convergence::converged)
+                .max(Comparator.comparingLong(Convergence::nanos))
+                .map(Convergence::query)
+                .orElse(""));
+        return row;
+    }
+}
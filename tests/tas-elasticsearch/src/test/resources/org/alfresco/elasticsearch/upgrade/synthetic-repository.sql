@@ -0,0 +1,201 @@
+-- Bulk-loads a synthetic repository, see SyntheticRepositoryGenerator.
+--
+-- The nodes are cloned from a template document uploaded through the REST API and from its parent folder, so that every store, type, aspect, property and
+-- ACL entry they reference already exists. The generator prepends the `params` and `samples` temporary tables to this script.
+
+CREATE FUNCTION pg_temp.crc32(value text) RETURNS bigint AS $$
+DECLARE
+    bytes bytea := convert_to(value, 'UTF8');
+    crc bigint := 4294967295;
+BEGIN
+    FOR i IN 0 .. length(bytes) - 1 LOOP
+        crc := crc # get_byte(bytes, i);
+        FOR j IN 1 .. 8 LOOP
+            crc := (crc >> 1) # (3988292384 * (crc & 1));
+        END LOOP;
+    END LOOP;
+    RETURN crc # 4294967295;
+END
+$$ LANGUAGE plpgsql IMMUTABLE;
+
+CREATE FUNCTION pg_temp.new_uuid() RETURNS text AS $$
+    SELECT uuid_in(md5(random()::text || clock_timestamp()::text)::cstring)::text;
+$$ LANGUAGE sql VOLATILE;
+
+CREATE FUNCTION pg_temp.qname_id(text, text) RETURNS bigint AS $$
+    SELECT q.id FROM alf_qname q JOIN alf_namespace n ON n.id = q.ns_id WHERE n.uri = $1 AND q.local_name = $2;
+$$ LANGUAGE sql STABLE;
+
+CREATE TEMP TABLE tpl AS
+SELECT d.id AS doc_id, d.type_qname_id AS doc_type, d.acl_id AS doc_acl_id,
+       f.id AS folder_id, f.type_qname_id AS folder_type, f.acl_id AS folder_acl_id,
+       a.type_qname_id AS assoc_type, a.qname_ns_id, n.uri AS qname_ns_uri, a.assoc_index,
+       pg_temp.qname_id('http://www.alfresco.org/model/content/1.0', 'name') AS name_qname,
+       pg_temp.qname_id('http://www.alfresco.org/model/content/1.0', 'content') AS content_qname
+FROM alf_node d
+JOIN alf_child_assoc a ON a.child_node_id = d.id AND a.is_primary
+JOIN alf_node f ON f.id = a.parent_node_id
+JOIN alf_namespace n ON n.id = a.qname_ns_id
+WHERE d.uuid = (SELECT template_uuid FROM params);
+
+-- The version history lives in a separate store, so the generated documents aren't versionable.
+CREATE TEMP TABLE excluded_qnames AS
+SELECT pg_temp.qname_id('http://www.alfresco.org/model/content/1.0', local_name) AS qname_id
+FROM unnest(ARRAY['versionable', 'versionLabel', 'versionType', 'autoVersion', 'autoVersionOnUpdateProps', 'initialVersion']) AS local_name;
+
+CREATE TEMP TABLE gen
+(
+    node_id bigint PRIMARY KEY,
+    parent_id bigint NOT NULL,
+    top_id bigint,
+    name text NOT NULL,
+    is_folder boolean NOT NULL,
+    level int NOT NULL,
+    acl_id bigint,
+    txn_id bigint,
+    content_data_id bigint
+);
+CREATE TEMP TABLE batches (batch bigint PRIMARY KEY, txn_id bigint NOT NULL);
+CREATE TEMP TABLE acl_map (top_id bigint PRIMARY KEY, defining_id bigint NOT NULL, shared_id bigint NOT NULL);
+
+DO $$
+DECLARE
+    p params%ROWTYPE;
+    t tpl%ROWTYPE;
+    now_ms bigint := (extract(epoch FROM clock_timestamp()) * 1000)::bigint;
+    change_set bigint;
+    mimetype bigint;
+    encoding bigint;
+    content_locale bigint;
+    leaf_folders bigint[];
+BEGIN
+    SELECT * INTO p FROM params;
+    IF (SELECT count(*) FROM tpl) <> 1 THEN
+        RAISE EXCEPTION 'Template document % not found.', p.template_uuid;
+    END IF;
+    SELECT * INTO t FROM tpl;
+
+    -- The folder tree, level by level, under a root folder in the parent of the template.
+    INSERT INTO gen (node_id, parent_id, name, is_folder, level)
+    VALUES (nextval('alf_node_seq'), t.folder_id, p.name, true, 0);
+    FOR lvl IN 1 .. p.depth LOOP
+        INSERT INTO gen (node_id, parent_id, top_id, name, is_folder, level)
+        SELECT f.id, f.parent_id, CASE WHEN lvl = 1 THEN f.id ELSE f.top_id END, f.name, true, lvl
+        FROM (SELECT nextval('alf_node_seq') AS id, g.node_id AS parent_id, g.top_id, 'folder-' || lvl || '-' || i AS name
+              FROM gen g CROSS JOIN generate_series(1, p.folders_per_level) i
+              WHERE g.level = lvl - 1) f;
+    END LOOP;
+
+    -- The documents, in the leaf folders. Their names are unique in the whole tree, so that they can be filed in any other folder.
+    INSERT INTO gen (node_id, parent_id, top_id, name, is_folder, level)
+    SELECT d.id, d.parent_id, d.top_id, p.name || '-' || d.id || '.txt', false, p.depth + 1
+    FROM (SELECT nextval('alf_node_seq') AS id, g.node_id AS parent_id, g.top_id
+          FROM gen g CROSS JOIN generate_series(1, p.documents_per_folder)
+          WHERE g.level = p.depth) d;
+    UPDATE gen SET content_data_id = nextval('alf_content_data_seq') WHERE NOT is_folder;
+
+    -- One transaction per batch of nodes, as if they had been created by a bulk import.
+    INSERT INTO batches (batch, txn_id)
+    SELECT b.batch, nextval('alf_transaction_seq') AS txn_id
+    FROM (SELECT DISTINCT (node_id - (SELECT min(node_id) FROM gen)) / p.batch_size AS batch FROM gen) b;
+    INSERT INTO alf_transaction (id, version, change_txn_id, commit_time_ms)
+    SELECT txn_id, 1, pg_temp.new_uuid(), now_ms FROM batches;
+    UPDATE gen g SET txn_id = b.txn_id
+    FROM batches b WHERE b.batch = (g.node_id - (SELECT min(node_id) FROM gen)) / p.batch_size;
+
+    -- Every top level folder gets copies of the ACLs of the template folder: a defining ACL for itself and a shared one inherited by its content.
+    UPDATE gen SET acl_id = t.doc_acl_id;
+    IF p.depth > 0 AND t.folder_acl_id IS NOT NULL AND t.doc_acl_id IS NOT NULL AND t.folder_acl_id <> t.doc_acl_id THEN
+        INSERT INTO alf_acl_change_set (id, version, commit_time_ms) VALUES (nextval('alf_acl_change_set_seq'), 0, now_ms) RETURNING id INTO change_set;
+        INSERT INTO acl_map (top_id, defining_id, shared_id)
+        SELECT node_id AS top_id, nextval('alf_access_control_list_seq') AS defining_id, nextval('alf_access_control_list_seq') AS shared_id
+        FROM gen WHERE level = 1;
+
+        INSERT INTO alf_access_control_list (id, version, acl_id, latest, acl_version, inherits, inherits_from, type, inherited_acl, is_versioned, requires_version, acl_change_set)
+        SELECT m.defining_id, 0, pg_temp.new_uuid(), a.latest, a.acl_version, a.inherits, a.inherits_from, a.type,
+               CASE WHEN a.inherited_acl = t.doc_acl_id THEN m.shared_id ELSE a.inherited_acl END, a.is_versioned, false, change_set
+        FROM acl_map m CROSS JOIN alf_access_control_list a WHERE a.id = t.folder_acl_id;
+        INSERT INTO alf_access_control_list (id, version, acl_id, latest, acl_version, inherits, inherits_from, type, inherited_acl, is_versioned, requires_version, acl_change_set)
+        SELECT m.shared_id, 0, pg_temp.new_uuid(), a.latest, a.acl_version, a.inherits,
+               CASE WHEN a.inherits_from = t.folder_acl_id THEN m.defining_id ELSE a.inherits_from END, a.type,
+               CASE WHEN a.inherited_acl = a.id THEN m.shared_id ELSE a.inherited_acl END, a.is_versioned, false, change_set
+        FROM acl_map m CROSS JOIN alf_access_control_list a WHERE a.id = t.doc_acl_id;
+        INSERT INTO alf_acl_member (id, version, acl_id, ace_id, pos)
+        SELECT nextval('alf_acl_member_seq'), 0, m.defining_id, am.ace_id, am.pos
+        FROM acl_map m JOIN alf_acl_member am ON am.acl_id = t.folder_acl_id;
+        INSERT INTO alf_acl_member (id, version, acl_id, ace_id, pos)
+        SELECT nextval('alf_acl_member_seq'), 0, m.shared_id, am.ace_id, am.pos
+        FROM acl_map m JOIN alf_acl_member am ON am.acl_id = t.doc_acl_id;
+
+        UPDATE gen g SET acl_id = CASE WHEN g.level = 1 THEN m.defining_id ELSE m.shared_id END
+        FROM acl_map m WHERE m.top_id = g.top_id;
+    END IF;
+
+    INSERT INTO alf_node (id, version, store_id, uuid, transaction_id, type_qname_id, locale_id, acl_id,
+                          audit_creator, audit_created, audit_modifier, audit_modified, audit_accessed)
+    SELECT g.node_id, 1, n.store_id, pg_temp.new_uuid(), g.txn_id, n.type_qname_id, n.locale_id, g.acl_id,
+           n.audit_creator, n.audit_created, n.audit_modifier, n.audit_modified, n.audit_accessed
+    FROM gen g JOIN alf_node n ON n.id = CASE WHEN g.is_folder THEN t.folder_id ELSE t.doc_id END;
+
+    -- The name and qname CRCs are computed the same way as in ChildAssocEntity.
+    INSERT INTO alf_child_assoc (id, version, parent_node_id, type_qname_id, child_node_name_crc, child_node_name, child_node_id,
+                                 qname_ns_id, qname_localname, qname_crc, is_primary, assoc_index)
+    SELECT nextval('alf_child_assoc_seq'), 1, g.parent_id, t.assoc_type, pg_temp.crc32(lower(g.name)), lower(g.name), g.node_id,
+           t.qname_ns_id, g.name, pg_temp.crc32(t.qname_ns_uri || g.name), true, t.assoc_index
+    FROM gen g;
+
+    -- Secondary associations file a share of the documents in another leaf folder as well.
+    SELECT array_agg(node_id ORDER BY node_id) INTO leaf_folders FROM gen WHERE is_folder AND level = p.depth;
+    IF array_length(leaf_folders, 1) > 1 THEN
+        INSERT INTO alf_child_assoc (id, version, parent_node_id, type_qname_id, child_node_name_crc, child_node_name, child_node_id,
+                                     qname_ns_id, qname_localname, qname_crc, is_primary, assoc_index)
+        SELECT nextval('alf_child_assoc_seq'), 1, s.target_id, t.assoc_type, pg_temp.crc32(lower(s.name)), lower(s.name), s.node_id,
+               t.qname_ns_id, s.name, pg_temp.crc32(t.qname_ns_uri || s.name), false, t.assoc_index
+        FROM (SELECT g.node_id, g.name, leaf_folders[1 + floor(random() * array_length(leaf_folders, 1))::int] AS target_id, g.parent_id
+              FROM gen g WHERE NOT g.is_folder AND g.node_id % 100 < p.secondary_percent) s
+        WHERE s.target_id <> s.parent_id;
+    END IF;
+
+    -- The content of the documents is spread over the sample files written by the generator.
+    INSERT INTO alf_mimetype (id, version, mimetype_str)
+    SELECT nextval('alf_mimetype_seq'), 0, 'text/plain' WHERE NOT EXISTS (SELECT 1 FROM alf_mimetype WHERE mimetype_str = 'text/plain');
+    INSERT INTO alf_encoding (id, version, encoding_str)
+    SELECT nextval('alf_encoding_seq'), 0, 'utf-8' WHERE NOT EXISTS (SELECT 1 FROM alf_encoding WHERE encoding_str = 'utf-8');
+    SELECT id INTO mimetype FROM alf_mimetype WHERE mimetype_str = 'text/plain';
+    SELECT id INTO encoding FROM alf_encoding WHERE encoding_str = 'utf-8';
+    SELECT cd.content_locale_id INTO content_locale
+    FROM alf_node_properties np JOIN alf_content_data cd ON cd.id = np.long_value
+    WHERE np.node_id = t.doc_id AND np.qname_id = t.content_qname;
+
+    UPDATE samples SET url_id = nextval('alf_content_url_seq');
+    INSERT INTO alf_content_url (id, version, content_url, content_url_short, content_url_crc, content_size, orphan_time)
+    SELECT url_id, 0, content_url, right(lower(content_url), 12), pg_temp.crc32(lower(content_url)), content_size, NULL FROM samples;
+    INSERT INTO alf_content_data (id, version, content_url_id, content_mimetype_id, content_encoding_id, content_locale_id)
+    SELECT g.content_data_id, 0, s.url_id, mimetype, encoding, content_locale
+    FROM gen g JOIN samples s ON s.sample = g.node_id % (SELECT count(*) FROM samples)
+    WHERE NOT g.is_folder;
+
+    INSERT INTO alf_node_properties (node_id, actual_type_n, persisted_type_n, boolean_value, long_value, float_value, double_value,
+                                     string_value, serializable_value, qname_id, list_index, locale_id)
+    SELECT g.node_id, np.actual_type_n, np.persisted_type_n, np.boolean_value,
+           CASE WHEN np.qname_id = t.content_qname THEN g.content_data_id ELSE np.long_value END,
+           np.float_value, np.double_value,
+           CASE WHEN np.qname_id = t.name_qname THEN g.name ELSE np.string_value END,
+           np.serializable_value, np.qname_id, np.list_index, np.locale_id
+    FROM gen g JOIN alf_node_properties np ON np.node_id = CASE WHEN g.is_folder THEN t.folder_id ELSE t.doc_id END
+    WHERE np.qname_id NOT IN (SELECT qname_id FROM excluded_qnames WHERE qname_id IS NOT NULL);
+
+    INSERT INTO alf_node_aspects (node_id, qname_id)
+    SELECT g.node_id, na.qname_id
+    FROM gen g JOIN alf_node_aspects na ON na.node_id = CASE WHEN g.is_folder THEN t.folder_id ELSE t.doc_id END
+    WHERE na.qname_id NOT IN (SELECT qname_id FROM excluded_qnames WHERE qname_id IS NOT NULL);
+END
+$$;
+
+ANALYZE alf_node;
+ANALYZE alf_child_assoc;
+ANALYZE alf_node_properties;
+
+SELECT (SELECT count(*) FROM gen WHERE is_folder) || ',' || (SELECT count(*) FROM gen WHERE NOT is_folder) || ','
+       || (SELECT count(*) FROM alf_child_assoc WHERE NOT is_primary AND child_node_id IN (SELECT node_id FROM gen)) || ','
+       || (SELECT count(DISTINCT acl_id) FROM gen) || ',' || (SELECT count(DISTINCT txn_id) FROM gen);
@@ -2,8 +2,13 @@ package org.alfresco.tas;
 
 import static org.alfresco.tas.SystemPropertyHelper.getSystemProperty;
 
+import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -12,7 +17,9 @@ import com.github.dockerjava.api.command.CreateContainerCmd;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.test.context.support.TestPropertySourceUtils;
 import org.testcontainers.containers.BindMode;
 import org.testcontainers.containers.GenericContainer;
@@ -24,10 +31,8 @@ import org.testcontainers.containers.Network;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.containers.output.Slf4jLogConsumer;
 import org.testcontainers.containers.startupcheck.IndefiniteWaitOneShotStartupCheckStrategy;
-import org.testcontainers.containers.wait.strategy.LogMessageWaitStrategy;
 import org.testcontainers.containers.wait.strategy.Wait;
 import org.testcontainers.lifecycle.Startable;
-import org.testcontainers.lifecycle.Startables;
 import org.testcontainers.utility.DockerImageName;
 import org.testng.Assert;
 import org.testng.util.Strings;
@@ -50,34 +55,55 @@ public class AlfrescoStackInitializer implements ApplicationContextInitializer<C
     /** To create the kibana container for a test run then pass -Dkibana=true as an argument to the mvn command. */
     public static GenericContainer dashboardsContainer;
 
+    /** The live indexing application, the only subscriber to the repository events. */
     public static GenericContainer liveIndexer;
 
+    /** The worker containers of every live indexing replica after the first one, the number of replicas is set with -Dliveindexing.replicas. */
+    private static final List<List<GenericContainer<?>>> liveIndexingWorkers = new ArrayList<>();
+
+    /** The initializer which started the running stack, used to create more live indexing replicas. */
+    private static AlfrescoStackInitializer runningStackInitializer;
+
+    public static SearchEngineClient searchEngineClient;
+
+    private static SearchIndexSnapshotFixture indexSnapshot;
+
+    private static RepositoryReadinessWaitStrategy repositoryReadiness;
+
+    private static final List<Startable> stackContainers = new ArrayList<>();
+
     @Override
     public void initialize(ConfigurableApplicationContext configurableApplicationContext)
     {
-
-        // Wait till existing containers are stopped
-        if (alfresco != null)
+        final String stackKey = getStackKey();
+        StackLease lease = StackLease.tryAcquire(stackKey);
+        if (lease != null)
         {
-            if (alfresco.getDockerClient().listContainersCmd().withShowAll(true).exec().size() > 0)
-            {
-                try
-                {
-                    LOGGER.info("Waiting for living containers to be stopped...");
-                    Thread.sleep(10000);
-                }
-                catch (InterruptedException e)
-                {
-                    e.printStackTrace();
-                }
-            }
+            resetStack();
+        }
+        else
+        {
+            retireRunningStack();
+            startStack(stackKey);
+            lease = StackLease.acquireNew(stackKey);
         }
+        final StackLease contextLease = lease;
+        configurableApplicationContext.addApplicationListener((ApplicationListener<ContextClosedEvent>) event -> contextLease.release());
+
+        TestPropertySourceUtils.addInlinedPropertiesToEnvironment(configurableApplicationContext,
+                "alfresco.server=" + alfresco.getContainerIpAddress(),
+                "alfresco.port=" + alfresco.getFirstMappedPort());
+    }
 
+    private void startStack(String stackKey)
+    {
         network = Network.newNetwork();
 
+        ImagePrewarmer.prewarm(getStackImages());
+
         alfresco = createAlfrescoContainer();
 
-        JdbcDatabaseContainer database = createDatabaseContainer();
+        JdbcDatabaseContainer database = getContainerResources(ContainerRole.DATABASE).applyLimits(createDatabaseContainer());
 
         GenericContainer transformRouter = createTransformRouterContainer();
 
@@ -89,35 +115,217 @@ public class AlfrescoStackInitializer implements ApplicationContextInitializer<C
 
         searchEngineContainer = createSearchEngineContainer();
 
-        startOrFail(searchEngineContainer);
-
-        configureSecuritySettings(searchEngineContainer);
+        liveIndexer = createLiveIndexingContainer();
+        liveIndexingWorkers.clear();
+        int liveIndexingReplicas = Integer.parseInt(getSystemProperty("liveindexing.replicas", "1"));
+        for (int i = 1; i < liveIndexingReplicas; i++)
+        {
+            liveIndexingWorkers.add(createLiveIndexingWorkerContainers());
+        }
+        runningStackInitializer = this;
 
-        startOrFail(database);
+        DatabaseTemplate databaseTemplate = DatabaseTemplate.forStack(getImagesConfig().getDatabaseType(), getDatabaseImage(), alfresco);
+        boolean startFromTemplate = databaseTemplate != null && databaseTemplate.isAvailable();
+        if (startFromTemplate)
+        {
+            databaseTemplate.prepareRepository(alfresco);
+        }
 
-        startOrFail(activemq, sfs);
+        // Every container is started as soon as the containers it needs are ready.
+        ContainerStartupGraph startupGraph = new ContainerStartupGraph()
+                .add("search-engine", searchEngineContainer, () -> configureSecuritySettings(searchEngineContainer))
+                .add("database", database, () -> {
+                    if (startFromTemplate)
+                    {
+                        databaseTemplate.restoreDatabase(database);
+                    }
+                })
+                .add("activemq", activemq)
+                .add("shared-file-store", sfs)
+                .add("transform-core", transformCore, "activemq", "shared-file-store")
+                .add("transform-router", transformRouter, "activemq", "shared-file-store");
+        List<String> alfrescoDependencies = new ArrayList<>(List.of("database", "search-engine", "activemq", "shared-file-store", "transform-core", "transform-router"));
+        startupGraph.add("live-indexing", liveIndexer, "search-engine", "activemq", "shared-file-store", "transform-core");
+        alfrescoDependencies.add("live-indexing");
+        for (int i = 0; i < liveIndexingWorkers.size(); i++)
+        {
+            List<GenericContainer<?>> replica = liveIndexingWorkers.get(i);
+            for (int j = 0; j < replica.size(); j++)
+            {
+                String name = "live-indexing-" + (i + 2) + "-" + (j + 1);
+                startupGraph.add(name, replica.get(j), "search-engine", "activemq", "shared-file-store", "transform-core");
+                alfrescoDependencies.add(name);
+            }
+        }
+        // The repository is started last so that live indexing doesn't miss any events published during bootstrap. A repository started from a database template doesn't
+        // bootstrap, and is reindexed instead once the stack is up.
+        startupGraph.add("alfresco", alfresco, alfrescoDependencies.toArray(String[]::new));
 
-        startOrFail(transformCore, transformRouter);
+        // Stopped in reverse order, so the repository goes first.
+        stackContainers.addAll(List.of(searchEngineContainer, database, activemq, sfs, transformCore, transformRouter));
+        stackContainers.add(liveIndexer);
+        liveIndexingWorkers.forEach(stackContainers::addAll);
+        stackContainers.add(alfresco);
 
         // We don't want Kibana to run on our CI, but it can be useful when investigating issues locally.
         if (getSystemProperty("kibana", "false").equals("true"))
         {
             dashboardsContainer = createDashboardsContainer();
-            startOrFail(dashboardsContainer);
+            startupGraph.add("dashboards", dashboardsContainer, "search-engine");
+            stackContainers.add(dashboardsContainer);
         }
 
-        liveIndexer = createLiveIndexingContainer();
+        startOrFail(startupGraph, stackKey);
 
-        startOrFail(liveIndexer);
+        if (databaseTemplate != null && !startFromTemplate)
+        {
+            databaseTemplate.capture(database, alfresco);
+        }
 
-        startOrFail(alfresco);
+        searchEngineClient = createSearchEngineClient(searchEngineContainer);
+        indexSnapshot = new SearchIndexSnapshotFixture(searchEngineClient, CUSTOM_ALFRESCO_INDEX);
+
+        if (startFromTemplate)
+        {
+            // The repository didn't bootstrap, so live indexing never saw the system and bootstrap nodes. Index them as a normal start would have.
+            reindexEverythingWithoutSnapshot();
+        }
 
         alfresco.followOutput(LOG_CONSUMER);
+    }
 
-        TestPropertySourceUtils.addInlinedPropertiesToEnvironment(configurableApplicationContext,
-                "alfresco.server=" + alfresco.getContainerIpAddress(),
-                "alfresco.port=" + alfresco.getFirstMappedPort());
+    /**
+     * Retire the containers of a previous, incompatible stack. They are stopped once no test context uses them, which replaces waiting a fixed amount of time for them to go away.
+     * Contexts still holding the previous stack keep talking to its containers, while the static fields describe the new stack.
+     */
+    private void retireRunningStack()
+    {
+        if (stackContainers.isEmpty())
+        {
+            return;
+        }
+        final List<Startable> containers = new ArrayList<>(stackContainers);
+        final Network previousNetwork = network;
+        stackContainers.clear();
+        StackLease.retire(() -> {
+            Collections.reverse(containers);
+            containers.forEach(Startable::stop);
+            previousNetwork.close();
+        });
+    }
+
+    /**
+     * Prepare a reused stack for the next test context.
+     * <p>
+     * Tests isolate their data using random users, sites and file names, so there is no need to truncate the repository. We just make sure that everything indexed for previous
+     * contexts is visible to search before handing the stack over.
+     */
+    protected void resetStack()
+    {
+        try
+        {
+            searchEngineClient.post("/" + CUSTOM_ALFRESCO_INDEX + "/_refresh", null);
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Unable to refresh the search index of the reused stack.", e);
+        }
+    }
+
+    /**
+     * Describe the configuration of the stack this initializer would create. Contexts with equal keys share a single running stack.
+     *
+     * @return The key.
+     */
+    protected String getStackKey()
+    {
+        ImagesConfig imagesConfig = getImagesConfig();
+        return String.join("|",
+                getClass().getName(),
+                imagesConfig.getRepositoryImage(),
+                imagesConfig.getSearchEngineType().getType(),
+                imagesConfig.getDatabaseType().getType(),
+                imagesConfig.getLiveIndexingImage(),
+                imagesConfig.getActiveMqImage(),
+                imagesConfig.getTransformRouterImage(),
+                imagesConfig.getTransformCoreAIOImage(),
+                imagesConfig.getSharedFileStoreImage(),
+                imagesConfig.getResourceProfile().getType(),
+                getSystemProperty("liveindexing.replicas", "1"),
+                getSystemProperty("kibana", "false"));
+    }
+
+    /**
+     * Change the number of live indexing replicas of the running stack.
+     * <p>
+     * Every instance of the live indexing application subscribes to the repository events topic, so running it twice would index every event twice. The first replica is the
+     * application, which turns the events into indexing requests on JMS queues, and every other replica is a set of worker containers, one per component listed in
+     * -Dliveindexing.worker.components (metadata,content,path by default). The workers are competing consumers of those queues, so the indexing work is shared between them.
+     * <p>
+     * Scaling to 0 stops live indexing altogether, e.g. to build a backlog. The events published in the meantime are only indexed once it is scaled up again if the broker has
+     * kept them for the subscription of the application.
+     *
+     * @param replicas
+     *            The number of replicas, 0 to stop live indexing.
+     */
+    public static synchronized void scaleLiveIndexing(int replicas)
+    {
+        if (replicas < 0)
+        {
+            throw new IllegalArgumentException("The number of live indexing replicas can't be negative.");
+        }
+        while (liveIndexingWorkers.size() > Math.max(0, replicas - 1))
+        {
+            List<GenericContainer<?>> replica = liveIndexingWorkers.remove(liveIndexingWorkers.size() - 1);
+            replica.forEach(GenericContainer::stop);
+            stackContainers.removeAll(replica);
+        }
+        if (replicas == 0 && liveIndexer.isRunning())
+        {
+            liveIndexer.stop();
+        }
+        else if (replicas > 0 && !liveIndexer.isRunning())
+        {
+            liveIndexer.start();
+        }
+        while (liveIndexingWorkers.size() < replicas - 1)
+        {
+            List<GenericContainer<?>> replica = runningStackInitializer.createLiveIndexingWorkerContainers();
+            replica.forEach(GenericContainer::start);
+            liveIndexingWorkers.add(replica);
+            stackContainers.addAll(replica);
+        }
+        LOGGER.info("Running {} live indexing replicas.", replicas);
+    }
+
+    /** @return The number of live indexing replicas of the running stack. */
+    public static synchronized int getLiveIndexingReplicas()
+    {
+        return liveIndexer.isRunning() ? 1 + liveIndexingWorkers.size() : 0;
+    }
+
+    /**
+     * Get the resources of a container, according to the selected resource profile.
+     *
+     * @param role
+     *            The role of the container.
+     * @return The resources to give to the container.
+     */
+    public static ContainerResources getContainerResources(ContainerRole role)
+    {
+        return getImagesConfig().getResourceProfile().getResources(role);
+    }
 
+    /**
+     * Create the client used to call the search engine REST API.
+     *
+     * @param searchEngineContainer
+     *            The running search engine container.
+     * @return The client.
+     */
+    protected SearchEngineClient createSearchEngineClient(GenericContainer searchEngineContainer)
+    {
+        return new SearchEngineClient(searchEngineContainer);
     }
 
     private JdbcDatabaseContainer createDatabaseContainer()
@@ -139,6 +347,49 @@ public class AlfrescoStackInitializer implements ApplicationContextInitializer<C
         }
     }
 
+    /**
+     * List the images used by the stack, so that they can be pulled before any container is created.
+     *
+     * @return The image names.
+     */
+    protected List<String> getStackImages()
+    {
+        ImagesConfig imagesConfig = getImagesConfig();
+        boolean openSearch = imagesConfig.getSearchEngineType() == SearchEngineType.OPENSEARCH_ENGINE;
+        List<String> images = new ArrayList<>(List.of(
+                imagesConfig.getRepositoryImage(),
+                openSearch ? imagesConfig.getOpensearchImage() : imagesConfig.getElasticsearchImage(),
+                getDatabaseImage(),
+                imagesConfig.getActiveMqImage(),
+                imagesConfig.getSharedFileStoreImage(),
+                imagesConfig.getTransformCoreAIOImage(),
+                imagesConfig.getTransformRouterImage(),
+                imagesConfig.getLiveIndexingImage(),
+                imagesConfig.getReIndexingImage()));
+        if (Integer.parseInt(getSystemProperty("liveindexing.replicas", "1")) > 1)
+        {
+            getLiveIndexingWorkerComponents().forEach(component -> images.add(imagesConfig.getLiveIndexingWorkerImage(component)));
+        }
+        if (getSystemProperty("kibana", "false").equals("true"))
+        {
+            images.add(openSearch ? imagesConfig.getOpensearchDashboardsImage() : imagesConfig.getKibanaImage());
+        }
+        return images;
+    }
+
+    private String getDatabaseImage()
+    {
+        ImagesConfig imagesConfig = getImagesConfig();
+        return switch (imagesConfig.getDatabaseType())
+        {
+        case POSTGRESQL_DB -> imagesConfig.getPostgreSQLImage();
+        case MYSQL_DB -> imagesConfig.getMySQLImage();
+        case MARIA_DB -> imagesConfig.getMariaDBImage();
+        case MSSQL_DB -> imagesConfig.getMsSqlImage();
+        case ORACLE_DB -> imagesConfig.getOracleImage();
+        };
+    }
+
     public void configureSecuritySettings(GenericContainer searchEngineContainer)
     {
         // empty for default execution
@@ -146,8 +397,30 @@ public class AlfrescoStackInitializer implements ApplicationContextInitializer<C
 
     /**
      * Run the alfresco-elasticsearch-reindexing container with path reindexing enabled.
+     * <p>
+     * With -Dreindex.snapshot=true the index is snapshotted after the first full reindex of a stack, and later calls restore that snapshot and only reindex what has changed
+     * since. The restore closes the index, and documents of nodes deleted since the snapshot are not removed, so only enable it for suites running their classes one at a time
+     * which don't rely on deleted nodes being absent from the index.
      */
     public static void reindexEverything()
+    {
+        if (!Boolean.parseBoolean(getSystemProperty("reindex.snapshot", "false")))
+        {
+            reindexEverythingWithoutSnapshot();
+            return;
+        }
+        indexSnapshot.reindexEverything(
+                AlfrescoStackInitializer::reindexEverythingWithoutSnapshot,
+                fromTime -> reindex(Map.of("ALFRESCO_REINDEX_PATHINDEXINGENABLED", "true",
+                        "ALFRESCO_REINDEX_JOB_NAME", "reindexByDate",
+                        "ALFRESCO_REINDEX_FROM_TIME", fromTime)));
+    }
+
+    /**
+     * Run the alfresco-elasticsearch-reindexing container over every node, with path reindexing enabled, whether snapshots are enabled or not. The index stays open, so this is
+     * safe while other tests are querying it.
+     */
+    public static void reindexEverythingWithoutSnapshot()
     {
         reindex(Map.of("ALFRESCO_REINDEX_PATHINDEXINGENABLED", "true", // Ensure path reindexing is enabled.
                 "ALFRESCO_REINDEX_JOB_NAME", "reindexByDate"));
@@ -162,12 +435,7 @@ public class AlfrescoStackInitializer implements ApplicationContextInitializer<C
     public static void reindex(Map<String, String> envParam)
     {
         // Run the reindexing container.
-        Map<String, String> env = AlfrescoStackInitializer.getReindexEnvBasic();
-        env.putAll(envParam);
-
-        try (GenericContainer reindexingComponent = new GenericContainer(getImagesConfig().getReIndexingImage())
-                .withEnv(env)
-                .withNetwork(AlfrescoStackInitializer.network)
+        try (GenericContainer<?> reindexingComponent = createReindexingContainer(envParam)
                 .withStartupCheckStrategy(
                         new IndefiniteWaitOneShotStartupCheckStrategy()))
         {
@@ -175,6 +443,23 @@ public class AlfrescoStackInitializer implements ApplicationContextInitializer<C
         }
     }
 
+    /**
+     * Create (but don't start) an alfresco-elasticsearch-reindexing container attached to the stack.
+     *
+     * @param envParam
+     *            Any environment variables to override from the defaults.
+     * @return The container.
+     */
+    public static GenericContainer<?> createReindexingContainer(Map<String, String> envParam)
+    {
+        Map<String, String> env = AlfrescoStackInitializer.getReindexEnvBasic();
+        env.putAll(envParam);
+
+        return getContainerResources(ContainerRole.REINDEXING).applyLimits(new GenericContainer<>(getImagesConfig().getReIndexingImage())
+                .withEnv(env)
+                .withNetwork(AlfrescoStackInitializer.network));
+    }
+
     public static Map<String, String> getReindexEnvBasic()
     {
         DatabaseType databaseType = getImagesConfig().getDatabaseType();
@@ -188,29 +473,39 @@ public class AlfrescoStackInitializer implements ApplicationContextInitializer<C
                         "SPRING_ACTIVEMQ_BROKER-URL", "nio://activemq:61616",
                         "SPRING_ACTIVEMQ_USER", "admin",
                         "SPRING_ACTIVEMQ_PASSWORD", "admin",
-                        "JAVA_TOOL_OPTIONS", "-Xmx1g",
+                        "JAVA_TOOL_OPTIONS", getContainerResources(ContainerRole.REINDEXING).getHeapOptions(),
                         "ALFRESCO_ACCEPTEDCONTENTMEDIATYPESCACHE_BASEURL", "http://transform-core-aio:8090/transform/config"));
         env.put("MANAGEMENT_ENDPOINTS_WEB_EXPOSURE_INCLUDE", "health");
         env.put("ALFRESCO_REINDEX_PROMETHEUS_SCRAPE_INTERVAL_SECONDS", "0");
         return env;
     }
 
-    private void startOrFail(Startable... startables)
+    private void startOrFail(ContainerStartupGraph startupGraph, String stackKey)
     {
+        final StartupTimingReport timingReport;
         try
         {
-            Startables.deepStart(startables).get();
+            timingReport = StartupTimingReport.of(startupGraph.start(), stackKey)
+                    .withMetric("alfresco", "timeToFirstSuccessfulRequest", repositoryReadiness.getTimeToFirstSuccessfulRequest())
+                    .withMetric("alfresco", "timeToReady", repositoryReadiness.getTimeToReady());
         }
         catch (Exception e)
         {
             Assert.fail("Unable to start containers", e);
+            return;
+        }
+        timingReport.write();
+        final List<String> regressions = timingReport.findRegressions();
+        if (!regressions.isEmpty())
+        {
+            Assert.fail("The stack startup regressed against the baseline: " + String.join(", ", regressions));
         }
-
     }
 
     protected GenericContainer<?> createLiveIndexingContainer()
     {
-        return new GenericContainer<>(getImagesConfig().getLiveIndexingImage())
+        ContainerResources resources = getContainerResources(ContainerRole.LIVE_INDEXING);
+        return resources.applyLimits(new GenericContainer<>(getImagesConfig().getLiveIndexingImage())
                 .withNetwork(network)
                 .withNetworkAliases("live-indexing")
                 .withEnv("ELASTICSEARCH_INDEXNAME", CUSTOM_ALFRESCO_INDEX)
@@ -220,8 +515,37 @@ public class AlfrescoStackInitializer implements ApplicationContextInitializer<C
                 .withEnv("SPRING_ACTIVEMQ_PASSWORD", "admin")
                 .withEnv("ALFRESCO_SHAREDFILESTORE_BASEURL", "http://shared-file-store:8099/alfresco/api/-default-/private/sfs/versions/1/file/")
                 .withEnv("ALFRESCO_ACCEPTEDCONTENTMEDIATYPESCACHE_BASEURL", "http://transform-core-aio:8090/transform/config")
-                .withEnv("JAVA_TOOL_OPTIONS", "-Xms2g -Xmx2g -agentlib:jdwp=transport=dt_socket,address=*:5005,server=y,suspend=n")
-                .withExposedPorts(5005);
+                .withEnv("JAVA_TOOL_OPTIONS", resources.getHeapOptions() + " -agentlib:jdwp=transport=dt_socket,address=*:5005,server=y,suspend=n")
+                .withExposedPorts(5005));
+    }
+
+    /** @return A worker container for every component in -Dliveindexing.worker.components, not started. */
+    protected List<GenericContainer<?>> createLiveIndexingWorkerContainers()
+    {
+        ContainerResources resources = getContainerResources(ContainerRole.LIVE_INDEXING_WORKER);
+        List<GenericContainer<?>> workers = new ArrayList<>();
+        for (String component : getLiveIndexingWorkerComponents())
+        {
+            workers.add(resources.applyLimits(new GenericContainer<>(getImagesConfig().getLiveIndexingWorkerImage(component))
+                    .withNetwork(network)
+                    .withEnv("ELASTICSEARCH_INDEXNAME", CUSTOM_ALFRESCO_INDEX)
+                    .withEnv("SPRING_ELASTICSEARCH_REST_URIS", "http://elasticsearch:9200")
+                    .withEnv("SPRING_ACTIVEMQ_BROKERURL", "nio://activemq:61616")
+                    .withEnv("SPRING_ACTIVEMQ_USER", "admin")
+                    .withEnv("SPRING_ACTIVEMQ_PASSWORD", "admin")
+                    .withEnv("ALFRESCO_SHAREDFILESTORE_BASEURL", "http://shared-file-store:8099/alfresco/api/-default-/private/sfs/versions/1/file/")
+                    .withEnv("ALFRESCO_ACCEPTEDCONTENTMEDIATYPESCACHE_BASEURL", "http://transform-core-aio:8090/transform/config")
+                    .withEnv("JAVA_TOOL_OPTIONS", resources.getHeapOptions())));
+        }
+        return workers;
+    }
+
+    private static List<String> getLiveIndexingWorkerComponents()
+    {
+        return Arrays.stream(getSystemProperty("liveindexing.worker.components", "metadata,content,path").split(","))
+                .map(String::strip)
+                .filter(component -> !component.isEmpty())
+                .toList();
     }
 
     protected GenericContainer createSearchEngineContainer()
@@ -236,24 +560,28 @@ public class AlfrescoStackInitializer implements ApplicationContextInitializer<C
 
     protected GenericContainer createElasticContainer()
     {
-        return new GenericContainer<>(getImagesConfig().getElasticsearchImage())
+        ContainerResources resources = getContainerResources(ContainerRole.SEARCH_ENGINE);
+        return resources.applyLimits(new GenericContainer<>(getImagesConfig().getElasticsearchImage())
                 .withNetwork(network)
                 .withNetworkAliases("elasticsearch")
                 .withExposedPorts(9200)
                 .withEnv("xpack.security.enabled", "false")
                 .withEnv("discovery.type", "single-node")
-                .withEnv("ES_JAVA_OPTS", "-Xms2g -Xmx2g");
+                .withEnv("path.repo", SearchIndexSnapshotFixture.SNAPSHOT_REPOSITORY_PATH)
+                .withEnv("ES_JAVA_OPTS", resources.getHeapOptions()));
     }
 
     protected GenericContainer createOpensearchContainer()
     {
-        return new GenericContainer<>(getImagesConfig().getOpensearchImage())
+        ContainerResources resources = getContainerResources(ContainerRole.SEARCH_ENGINE);
+        return resources.applyLimits(new GenericContainer<>(getImagesConfig().getOpensearchImage())
                 .withNetwork(network)
                 .withNetworkAliases("elasticsearch")
                 .withExposedPorts(9200)
                 .withEnv("plugins.security.disabled", "true")
                 .withEnv("discovery.type", "single-node")
-                .withEnv("OPENSEARCH_JAVA_OPTS", "-Xms2g -Xmx2g");
+                .withEnv("path.repo", SearchIndexSnapshotFixture.SNAPSHOT_REPOSITORY_PATH)
+                .withEnv("OPENSEARCH_JAVA_OPTS", resources.getHeapOptions()));
     }
 
     protected GenericContainer createOpensearchDashboardsContainer()
@@ -276,13 +604,14 @@ public class AlfrescoStackInitializer implements ApplicationContextInitializer<C
 
     private GenericContainer createAMQContainer()
     {
-        return new GenericContainer(getImagesConfig().getActiveMqImage())
+        ContainerResources resources = getContainerResources(ContainerRole.ACTIVEMQ);
+        return resources.applyLimits(new GenericContainer(getImagesConfig().getActiveMqImage())
                 .withNetwork(network)
                 .withNetworkAliases("activemq")
-                .withEnv("JAVA_OPTS", "-Xms512m -Xmx1g")
+                .withEnv("JAVA_OPTS", resources.getHeapOptions())
                 .waitingFor(Wait.forListeningPort())
                 .withStartupTimeout(Duration.ofMinutes(2))
-                .withExposedPorts(61616, 8161, 5672, 61613);
+                .withExposedPorts(61616, 8161, 5672, 61613));
     }
 
     private PostgreSQLContainer createPosgresContainer()
@@ -341,38 +670,41 @@ public class AlfrescoStackInitializer implements ApplicationContextInitializer<C
 
     private GenericContainer createSfsContainer()
     {
-        return new GenericContainer(getImagesConfig().getSharedFileStoreImage())
+        ContainerResources resources = getContainerResources(ContainerRole.SHARED_FILE_STORE);
+        return resources.applyLimits(new GenericContainer(getImagesConfig().getSharedFileStoreImage())
                 .withNetwork(network)
                 .withNetworkAliases("shared-file-store")
-                .withEnv("JAVA_OPTS", "-Xms256m -Xmx512m")
+                .withEnv("JAVA_OPTS", resources.getHeapOptions())
                 .withEnv("scheduler.content.age.millis", "86400000")
                 .withEnv("scheduler.cleanup.interval", "86400000")
                 .withExposedPorts(8099)
                 .waitingFor(Wait.forListeningPort())
-                .withStartupTimeout(Duration.ofMinutes(2));
+                .withStartupTimeout(Duration.ofMinutes(2)));
     }
 
     private GenericContainer createTransformCoreContainer()
     {
-        return new GenericContainer(getImagesConfig().getTransformCoreAIOImage())
+        ContainerResources resources = getContainerResources(ContainerRole.TRANSFORM_CORE);
+        return resources.applyLimits(new GenericContainer(getImagesConfig().getTransformCoreAIOImage())
                 .withNetwork(network)
                 .withNetworkAliases("transform-core-aio")
-                .withEnv("JAVA_OPTS", "-Xms512m -Xmx1024m")
+                .withEnv("JAVA_OPTS", resources.getHeapOptions())
                 .withEnv("ACTIVEMQ_URL", "nio://activemq:61616")
                 .withEnv("ACTIVEMQ_USER", "admin")
                 .withEnv("ACTIVEMQ_PASSWORD", "admin")
                 .withEnv("FILE_STORE_URL", "http://shared-file-store:8099/alfresco/api/-default-/private/sfs/versions/1/file")
                 .withExposedPorts(8090)
                 .waitingFor(Wait.forListeningPort())
-                .withStartupTimeout(Duration.ofMinutes(2));
+                .withStartupTimeout(Duration.ofMinutes(2)));
     }
 
     private GenericContainer createTransformRouterContainer()
     {
-        return new GenericContainer(getImagesConfig().getTransformRouterImage())
+        ContainerResources resources = getContainerResources(ContainerRole.TRANSFORM_ROUTER);
+        return resources.applyLimits(new GenericContainer(getImagesConfig().getTransformRouterImage())
                 .withNetwork(network)
                 .withNetworkAliases("transform-router")
-                .withEnv("JAVA_OPTS", "-Xms256m -Xmx512m")
+                .withEnv("JAVA_OPTS", resources.getHeapOptions())
                 .withEnv("ACTIVEMQ_URL", "nio://activemq:61616")
                 .withEnv("ACTIVEMQ_USER", "admin")
                 .withEnv("ACTIVEMQ_PASSWORD", "admin")
@@ -380,13 +712,15 @@ public class AlfrescoStackInitializer implements ApplicationContextInitializer<C
                 .withEnv("FILE_STORE_URL", "http://shared-file-store:8099/alfresco/api/-default-/private/sfs/versions/1/file")
                 .withExposedPorts(8095)
                 .waitingFor(Wait.forListeningPort())
-                .withStartupTimeout(Duration.ofMinutes(2));
+                .withStartupTimeout(Duration.ofMinutes(2)));
     }
 
     protected GenericContainer createAlfrescoContainer()
     {
         DatabaseType databaseType = getImagesConfig().getDatabaseType();
-        return new GenericContainer(getImagesConfig().getRepositoryImage())
+        ContainerResources resources = getContainerResources(ContainerRole.REPOSITORY);
+        repositoryReadiness = new RepositoryReadinessWaitStrategy("admin", "admin");
+        return resources.applyLimits(new GenericContainer(getImagesConfig().getRepositoryImage())
                 .withEnv("CATALINA_OPTS", "\"-agentlib:jdwp=transport=dt_socket,address=*:8000,server=y,suspend=n\"")
                 .withEnv("JAVA_TOOL_OPTIONS",
                         "-Dencryption.keystore.type=JCEKS " +
@@ -422,15 +756,15 @@ public class AlfrescoStackInitializer implements ApplicationContextInitializer<C
                                 "-Dalfresco.restApi.basicAuthScheme=true " +
                                 "-Dquery.cmis.queryConsistency=EVENTUAL " +
                                 "-Dquery.fts.queryConsistency=EVENTUAL " +
-                                "-Xms1g -Xmx2g ")
+                                resources.getHeapOptions() + " ")
                 .withNetwork(network)
                 .withNetworkAliases("alfresco")
-                .waitingFor(new LogMessageWaitStrategy().withRegEx(".*Server startup in.*\\n"))
+                .waitingFor(repositoryReadiness)
                 .withStartupTimeout(Duration.ofMinutes(7))
                 .withExposedPorts(8080, 8000)
                 .withClasspathResourceMapping("exactTermSearch.properties",
                         "/usr/local/tomcat/webapps/alfresco/WEB-INF/classes/alfresco/search/elasticsearch/config/exactTermSearch.properties",
-                        BindMode.READ_ONLY);
+                        BindMode.READ_ONLY));
     }
 
     private String escapeSemicolonInUrlForJavaOptsUsage(String url)
@@ -459,6 +793,17 @@ public class AlfrescoStackInitializer implements ApplicationContextInitializer<C
 
         String getLiveIndexingImage();
 
+        /**
+         * @param component
+         *            The live indexing component, e.g. content.
+         * @return The image running only the workers of the component, named after the live indexing image.
+         */
+        default String getLiveIndexingWorkerImage(String component)
+        {
+            DockerImageName liveIndexingImage = DockerImageName.parse(getLiveIndexingImage());
+            return liveIndexingImage.getUnversionedPart() + "-" + component + ":" + liveIndexingImage.getVersionPart();
+        }
+
         String getElasticsearchImage();
 
         String getOpensearchImage();
@@ -490,6 +835,12 @@ public class AlfrescoStackInitializer implements ApplicationContextInitializer<C
         String getKibanaImage();
 
         SearchEngineType getSearchEngineType();
+
+        /** @return The profile selected with -Dresource.profile, ci by default. */
+        default ResourceProfile getResourceProfile()
+        {
+            return SelectedResourceProfile.PROFILE;
+        }
     }
 
     private record DefaultImagesConfig(Function<String, String> envProperties, Function<String, String> mavenProperties) implements ImagesConfig
@@ -617,6 +968,13 @@ public class AlfrescoStackInitializer implements ApplicationContextInitializer<C
         }
     }
 
+    /** Holder so that the Docker host is only inspected once, and only if auto-detection is asked for. */
+    private static final class SelectedResourceProfile
+    {
+        private static final String RESOURCE_PROFILE = getSystemProperty("resource.profile", ResourceProfile.CI.getType());
+        private static final ResourceProfile PROFILE = "auto".equals(RESOURCE_PROFILE) ? ResourceProfile.detect() : ResourceProfile.from(RESOURCE_PROFILE);
+    }
+
     private static class OracleContainer<SELF extends OracleContainer<SELF>> extends JdbcDatabaseContainer<SELF>
     {
 
@@ -0,0 +1,51 @@
+package org.alfresco.tas;
+
+import org.testcontainers.containers.GenericContainer;
+
+/**
+ * The resources given to a container.
+ *
+ * @param minHeapMb
+ *            The initial JVM heap, or 0 to leave it to the JVM.
+ * @param maxHeapMb
+ *            The maximum JVM heap, or 0 for containers which don't run a JVM.
+ * @param cpus
+ *            The CPU quota (e.g. 1.5 CPUs), or 0 for no quota.
+ * @param memoryLimitMb
+ *            The cgroup memory limit, or 0 for no limit.
+ */
+public record ContainerResources(int minHeapMb, int maxHeapMb, double cpus, int memoryLimitMb)
+{
+    private static final long MB = 1024L * 1024L;
+
+    /** @return The -Xms/-Xmx options matching this heap size. */
+    public String getHeapOptions()
+    {
+        final String maxHeap = "-Xmx" + maxHeapMb + "m";
+        return minHeapMb > 0 ? "-Xms" + minHeapMb + "m " + maxHeap : maxHeap;
+    }
+
+    /**
+     * Apply the CPU quota and the memory limit to a container. Swap is disabled so that the limit is a hard one.
+     *
+     * @param container
+     *            The container, which must not have been started yet.
+     * @return The container.
+     */
+    public <T extends GenericContainer<?>> T applyLimits(T container)
+    {
+        container.withCreateContainerCmdModifier(cmd -> {
+            if (memoryLimitMb > 0)
+            {
+                cmd.getHostConfig()
+                        .withMemory(memoryLimitMb * MB)
+                        .withMemorySwap(memoryLimitMb * MB);
+            }
+            if (cpus > 0)
+            {
+                cmd.getHostConfig().withNanoCPUs((long) (cpus * 1_000_000_000L));
+            }
+        });
+        return container;
+    }
+}
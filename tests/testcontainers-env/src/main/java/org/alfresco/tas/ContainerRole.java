@@ -0,0 +1,7 @@
+package org.alfresco.tas;
+
+/** The roles of the containers in the test stack, used to look up their resources in a {@link ResourceProfile}. */
+public enum ContainerRole
+{
+    REPOSITORY, SEARCH_ENGINE, LIVE_INDEXING, LIVE_INDEXING_WORKER, REINDEXING, ACTIVEMQ, TRANSFORM_CORE, TRANSFORM_ROUTER, SHARED_FILE_STORE, DATABASE
+}
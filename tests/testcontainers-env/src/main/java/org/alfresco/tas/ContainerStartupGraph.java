@@ -0,0 +1,286 @@
+package org.alfresco.tas;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.github.dockerjava.api.command.InspectContainerResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.lifecycle.Startable;
+
+/**
+ * Starts a set of containers as a dependency graph. Every container is started as soon as all the containers it depends on are ready, so independent containers boot concurrently.
+ */
+public class ContainerStartupGraph
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContainerStartupGraph.class);
+
+    /** Resolving (and if needed pulling) the image. */
+    public static final String PULL = "pull";
+    /** Creating the container, up to the creation time recorded by the Docker daemon. */
+    public static final String CREATE = "create";
+    /** Between the container being created and its process being started. */
+    public static final String START = "start";
+    /** Between the container process being started and the wait strategy being satisfied. */
+    public static final String READINESS = "readiness";
+    /** The extra configuration done once the container is ready. */
+    public static final String SETUP = "setup";
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+
+    /**
+     * Add a container to the graph.
+     *
+     * @param name
+     *            The name used in dependency declarations and in the timing report.
+     * @param startable
+     *            The container to start.
+     * @param dependencies
+     *            The names of the containers which need to be ready before this one is started.
+     * @return This graph.
+     */
+    public ContainerStartupGraph add(String name, Startable startable, String... dependencies)
+    {
+        return add(name, startable, () -> {}, dependencies);
+    }
+
+    /**
+     * Add a container to the graph, along with some extra configuration which needs to be done once it has started.
+     *
+     * @param name
+     *            The name used in dependency declarations and in the timing report.
+     * @param startable
+     *            The container to start.
+     * @param setupAction
+     *            The action run once the container is ready. Dependent containers are only started after it completes.
+     * @param dependencies
+     *            The names of the containers which need to be ready before this one is started.
+     * @return This graph.
+     */
+    public ContainerStartupGraph add(String name, Startable startable, Runnable setupAction, String... dependencies)
+    {
+        return addNode(new Node(name, startable, setupAction, List.of(dependencies)));
+    }
+
+    /**
+     * Add a start action to the graph. This can be used when a container needs some extra configuration once it has started.
+     *
+     * @param name
+     *            The name used in dependency declarations and in the timing report.
+     * @param startAction
+     *            The action which starts the container and returns once it is ready.
+     * @param dependencies
+     *            The names of the nodes which need to be ready before this one is started.
+     * @return This graph.
+     */
+    public ContainerStartupGraph add(String name, Runnable startAction, String... dependencies)
+    {
+        return addNode(new Node(name, null, startAction, List.of(dependencies)));
+    }
+
+    private ContainerStartupGraph addNode(Node node)
+    {
+        if (nodes.containsKey(node.name))
+        {
+            throw new IllegalArgumentException("Container `" + node.name + "` has already been added.");
+        }
+        nodes.put(node.name, node);
+        return this;
+    }
+
+    /**
+     * Start every node of the graph and wait until all of them are ready.
+     *
+     * @return The timings of the startup.
+     * @throws ExecutionException
+     *             If any of the containers failed to start.
+     * @throws InterruptedException
+     *             If the thread was interrupted while waiting for the containers.
+     */
+    public StartupReport start() throws ExecutionException, InterruptedException
+    {
+        final List<Node> ordered = topologicalOrder();
+        final Map<String, CompletableFuture<Timing>> futures = new HashMap<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, ordered.size()));
+        final long graphStart = System.nanoTime();
+        try
+        {
+            for (Node node : ordered)
+            {
+                final CompletableFuture<?>[] dependencyFutures = node.dependencies.stream()
+                        .map(futures::get)
+                        .toArray(CompletableFuture[]::new);
+                futures.put(node.name, CompletableFuture.allOf(dependencyFutures)
+                        .thenApplyAsync(ignored -> node.run(graphStart), executor));
+            }
+            CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).get();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        final Map<String, Timing> timings = new LinkedHashMap<>();
+        for (Node node : ordered)
+        {
+            timings.put(node.name, futures.get(node.name).get());
+        }
+        final StartupReport report = new StartupReport(timings, criticalPath(timings), Duration.ofNanos(System.nanoTime() - graphStart));
+        report.log();
+        return report;
+    }
+
+    private List<Node> topologicalOrder()
+    {
+        final List<Node> ordered = new ArrayList<>();
+        final Set<String> visited = new LinkedHashSet<>();
+        final Set<String> visiting = new LinkedHashSet<>();
+        nodes.keySet().forEach(name -> visit(name, visiting, visited, ordered));
+        return ordered;
+    }
+
+    private void visit(String name, Set<String> visiting, Set<String> visited, List<Node> ordered)
+    {
+        if (visited.contains(name))
+        {
+            return;
+        }
+        final Node node = nodes.get(name);
+        if (node == null)
+        {
+            throw new IllegalStateException("Unknown container dependency `" + name + "`.");
+        }
+        if (!visiting.add(name))
+        {
+            throw new IllegalStateException("Cyclic container dependency detected: " + visiting + " -> " + name);
+        }
+        node.dependencies.forEach(dependency -> visit(dependency, visiting, visited, ordered));
+        visiting.remove(name);
+        visited.add(name);
+        ordered.add(node);
+    }
+
+    private List<String> criticalPath(Map<String, Timing> timings)
+    {
+        final List<String> path = new ArrayList<>();
+        Timing current = timings.values().stream().max(Comparator.comparing(Timing::readyAt)).orElse(null);
+        while (current != null)
+        {
+            path.add(current.name());
+            current = nodes.get(current.name()).dependencies.stream()
+                    .map(timings::get)
+                    .max(Comparator.comparing(Timing::readyAt))
+                    .orElse(null);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    private record Node(String name, Startable startable, Runnable setupAction, List<String> dependencies)
+    {
+        private Timing run(long graphStart)
+        {
+            final long start = System.nanoTime();
+            final Map<String, Duration> phases = new LinkedHashMap<>();
+            if (startable instanceof GenericContainer<?> container)
+            {
+                startContainer(container, phases);
+            }
+            else if (startable != null)
+            {
+                startable.start();
+            }
+            final long setupStart = System.nanoTime();
+            setupAction.run();
+            final long end = System.nanoTime();
+            if (startable != null)
+            {
+                phases.put(SETUP, Duration.ofNanos(end - setupStart));
+            }
+            return new Timing(name, Duration.ofNanos(start - graphStart), Duration.ofNanos(end - graphStart), phases);
+        }
+
+        /**
+         * Start a container, splitting the time taken into the pull, create, start and readiness phases. The create and start phases are derived from the timestamps recorded by
+         * the Docker daemon, so they are clamped to zero in case its clock is slightly off.
+         */
+        private static void startContainer(GenericContainer<?> container, Map<String, Duration> phases)
+        {
+            final long pullStart = System.nanoTime();
+            // Resolving the image name pulls the image if it isn't available locally.
+            container.getDockerImageName();
+            final Instant pulledAt = Instant.now();
+            phases.put(PULL, Duration.ofNanos(System.nanoTime() - pullStart));
+
+            container.start();
+            final Instant readyAt = Instant.now();
+
+            final InspectContainerResponse containerInfo = container.getContainerInfo();
+            final Instant createdAt = Instant.parse(containerInfo.getCreated());
+            final Instant startedAt = Instant.parse(containerInfo.getState().getStartedAt());
+            phases.put(CREATE, nonNegative(Duration.between(pulledAt, createdAt)));
+            phases.put(START, nonNegative(Duration.between(createdAt, startedAt)));
+            phases.put(READINESS, nonNegative(Duration.between(startedAt, readyAt)));
+        }
+
+        private static Duration nonNegative(Duration duration)
+        {
+            return duration.isNegative() ? Duration.ZERO : duration;
+        }
+    }
+
+    /**
+     * The timing of a single container start.
+     *
+     * @param name
+     *            The name of the container.
+     * @param startedAt
+     *            The time between the start of the graph and the start of this container.
+     * @param readyAt
+     *            The time between the start of the graph and this container being ready.
+     * @param phases
+     *            The time spent in each startup phase ({@link #PULL}, {@link #CREATE}, {@link #START}, {@link #READINESS} and {@link #SETUP}). Empty for plain start actions.
+     */
+    public record Timing(String name, Duration startedAt, Duration readyAt, Map<String, Duration> phases)
+    {
+        /** The time taken by this container alone. */
+        public Duration duration()
+        {
+            return readyAt.minus(startedAt);
+        }
+    }
+
+    /**
+     * The timings of a whole graph start.
+     *
+     * @param timings
+     *            The timing of every container, in start order.
+     * @param criticalPath
+     *            The chain of containers which determined the total startup time.
+     * @param total
+     *            The wall-clock time taken to start the graph.
+     */
+    public record StartupReport(Map<String, Timing> timings, List<String> criticalPath, Duration total)
+    {
+        private void log()
+        {
+            timings.values().forEach(timing -> LOGGER.info("Container `{}` started after {} ms and took {} ms to become ready. Phases: {}",
+                    timing.name(), timing.startedAt().toMillis(), timing.duration().toMillis(), timing.phases()));
+            LOGGER.info("Stack started in {} ms. Critical path: {}", total.toMillis(), String.join(" -> ", criticalPath));
+        }
+    }
+}
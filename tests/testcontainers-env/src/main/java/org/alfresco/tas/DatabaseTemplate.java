@@ -0,0 +1,214 @@
+package org.alfresco.tas;
+
+import static org.alfresco.tas.SystemPropertyHelper.getSystemProperty;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.Container.ExecResult;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.utility.MountableFile;
+
+/**
+ * Captures the state of a freshly bootstrapped repository (its database and its content store) so that later stacks can start from it and skip schema creation and patch
+ * execution.
+ * <p>
+ * Every stack runs its own database server, so the captured state is kept as a dump on the host, keyed by the repository image id and the database image. To enable this mode
+ * pass -Ddb.template=true (and optionally -Ddb.template.dir=... to choose where the templates are kept).
+ * <p>
+ * A repository started from a template doesn't publish any bootstrap events, so live indexing never sees the system and bootstrap nodes. The stack runs a full reindex after
+ * such a start, so that its search index holds the same nodes as after a normal start. That reindex takes part of the time saved by skipping the bootstrap.
+ */
+public class DatabaseTemplate
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseTemplate.class);
+
+    private static final String CONTAINER_DUMP_PATH = "/tmp/alfresco-template.dump";
+    private static final String CONTAINER_CONTENT_STORE_ARCHIVE_PATH = "/tmp/alf_data.tar";
+    private static final String CONTENT_STORE_PATH = "/usr/local/tomcat/alf_data";
+
+    private final DatabaseType databaseType;
+    private final Path templateDirectory;
+
+    private DatabaseTemplate(DatabaseType databaseType, Path templateDirectory)
+    {
+        this.databaseType = databaseType;
+        this.templateDirectory = templateDirectory;
+    }
+
+    /**
+     * Create the template for a stack, if the template mode is enabled.
+     *
+     * @param databaseType
+     *            The type of database used by the stack.
+     * @param databaseImage
+     *            The database image used by the stack.
+     * @param repository
+     *            The (not yet started) repository container.
+     * @return The template, or null if the mode is disabled or not supported for the database type.
+     */
+    public static DatabaseTemplate forStack(DatabaseType databaseType, String databaseImage, GenericContainer<?> repository)
+    {
+        if (!Boolean.parseBoolean(getSystemProperty("db.template", "false")))
+        {
+            return null;
+        }
+        if (dumpCommand(databaseType) == null)
+        {
+            LOGGER.info("Database templates are not supported for {}, the repository will bootstrap from scratch.", databaseType.getType());
+            return null;
+        }
+
+        final String repositoryImageId = repository.getDockerClient().inspectImageCmd(repository.getDockerImageName()).exec().getId();
+        final Path templateDirectory = Path.of(getSystemProperty("db.template.dir", Path.of(System.getProperty("java.io.tmpdir"), "alfresco-db-templates").toString()))
+                .resolve(sha256(repositoryImageId + "|" + databaseImage));
+        return new DatabaseTemplate(databaseType, templateDirectory);
+    }
+
+    /** @return true if a template has already been captured for this repository image and database. */
+    public boolean isAvailable()
+    {
+        return Files.isRegularFile(getDumpPath()) && Files.isRegularFile(getContentStoreArchivePath());
+    }
+
+    /**
+     * Make the repository start from the captured content store. This needs to be called before the repository is started.
+     *
+     * @param repository
+     *            The repository container.
+     */
+    public void prepareRepository(GenericContainer<?> repository)
+    {
+        repository.withCopyFileToContainer(MountableFile.forHostPath(getContentStoreArchivePath()), CONTAINER_CONTENT_STORE_ARCHIVE_PATH)
+                .withCommand("sh", "-c", "tar -xf " + CONTAINER_CONTENT_STORE_ARCHIVE_PATH + " -C " + CONTENT_STORE_PATH + " && exec catalina.sh run -security");
+    }
+
+    /**
+     * Load the captured database into a freshly started database container. This needs to be called before the repository is started.
+     *
+     * @param database
+     *            The running database container.
+     */
+    public void restoreDatabase(GenericContainer<?> database)
+    {
+        final long start = System.nanoTime();
+        database.copyFileToContainer(MountableFile.forHostPath(getDumpPath()), CONTAINER_DUMP_PATH);
+        exec(database, restoreCommand(databaseType));
+        LOGGER.info("Restored the {} template from {} in {} ms.", databaseType.getType(), templateDirectory, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Capture the state of a freshly bootstrapped repository.
+     *
+     * @param database
+     *            The running database container.
+     * @param repository
+     *            The running repository container.
+     */
+    public void capture(GenericContainer<?> database, GenericContainer<?> repository)
+    {
+        final long start = System.nanoTime();
+        try
+        {
+            Files.createDirectories(templateDirectory);
+            exec(database, dumpCommand(databaseType));
+            database.copyFileFromContainer(CONTAINER_DUMP_PATH, getDumpPath().toString());
+            exec(repository, "tar -C " + CONTENT_STORE_PATH + " -cf " + CONTAINER_CONTENT_STORE_ARCHIVE_PATH + " .");
+            repository.copyFileFromContainer(CONTAINER_CONTENT_STORE_ARCHIVE_PATH, getContentStoreArchivePath().toString());
+            LOGGER.info("Captured the {} template into {} in {} ms.", databaseType.getType(), templateDirectory, (System.nanoTime() - start) / 1_000_000);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // Never leave a partial template behind, as it would be used by the next run.
+            deleteQuietly(getDumpPath());
+            deleteQuietly(getContentStoreArchivePath());
+            LOGGER.warn("Unable to capture the database template.", e);
+        }
+    }
+
+    private Path getDumpPath()
+    {
+        return templateDirectory.resolve("database.dump");
+    }
+
+    private Path getContentStoreArchivePath()
+    {
+        return templateDirectory.resolve("alf_data.tar");
+    }
+
+    private static String dumpCommand(DatabaseType databaseType)
+    {
+        return switch (databaseType)
+        {
+        case POSTGRESQL_DB -> "pg_dump -Fc -U " + databaseType.getUsername() + " -f " + CONTAINER_DUMP_PATH + " alfresco";
+        case MYSQL_DB -> "mysqldump --no-tablespaces -u" + databaseType.getUsername() + " -p" + databaseType.getPassword() + " alfresco > " + CONTAINER_DUMP_PATH;
+        case MARIA_DB -> "$(command -v mariadb-dump || command -v mysqldump) -u" + databaseType.getUsername() + " -p" + databaseType.getPassword() + " alfresco > " + CONTAINER_DUMP_PATH;
+        // The SQL Server stack runs the repository in the master database and Oracle would need a Data Pump directory, so neither has a cheap equivalent.
+        default -> null;
+        };
+    }
+
+    private static String restoreCommand(DatabaseType databaseType)
+    {
+        return switch (databaseType)
+        {
+        case POSTGRESQL_DB -> "pg_restore --no-owner -U " + databaseType.getUsername() + " -d alfresco " + CONTAINER_DUMP_PATH;
+        case MYSQL_DB -> "mysql -u" + databaseType.getUsername() + " -p" + databaseType.getPassword() + " alfresco < " + CONTAINER_DUMP_PATH;
+        case MARIA_DB -> "$(command -v mariadb || command -v mysql) -u" + databaseType.getUsername() + " -p" + databaseType.getPassword() + " alfresco < " + CONTAINER_DUMP_PATH;
+        default -> throw new IllegalStateException("Database templates are not supported for " + databaseType.getType());
+        };
+    }
+
+    private static void exec(GenericContainer<?> container, String command)
+    {
+        final ExecResult result;
+        try
+        {
+            result = container.execInContainer("sh", "-c", command);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Failed to execute `" + command + "`.", e);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while executing `" + command + "`.", e);
+        }
+        if (result.getExitCode() != 0)
+        {
+            throw new IllegalStateException("Failed to execute `" + command + "`. " + result.getStderr());
+        }
+    }
+
+    private static void deleteQuietly(Path path)
+    {
+        try
+        {
+            Files.deleteIfExists(path);
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Unable to delete {}.", path, e);
+        }
+    }
+
+    private static String sha256(String value)
+    {
+        try
+        {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.alfresco.tas;
+
+import static org.alfresco.tas.SystemPropertyHelper.getSystemProperty;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.PullImageCmd;
+import com.github.dockerjava.api.command.PullImageResultCallback;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.PullResponseItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.utility.DockerImageName;
+import org.testcontainers.utility.ImageNameSubstitutor;
+
+/**
+ * Pulls the images of a stack concurrently before any container is created, rather than lazily one after the other as each container starts.
+ * <p>
+ * The number of concurrent pulls is set with -Dimage.prewarm.parallelism (4 by default) and pre-warming can be disabled with -Dimage.prewarm=false. Images which are already
+ * available locally, or were already pre-warmed by this JVM, are skipped.
+ */
+public final class ImagePrewarmer
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImagePrewarmer.class);
+
+    private static final Set<String> PREWARMED_IMAGES = new HashSet<>();
+
+    /** Private constructor for helper class. */
+    private ImagePrewarmer()
+    {}
+
+    /**
+     * Make sure the given images are available locally. A failed pull is only logged, the image will then be pulled again when its container starts.
+     *
+     * @param images
+     *            The names of the images.
+     * @return The result of every pull, excluding the images which were skipped.
+     */
+    public static synchronized List<PullResult> prewarm(Collection<String> images)
+    {
+        if (!Boolean.parseBoolean(getSystemProperty("image.prewarm", "true")))
+        {
+            return List.of();
+        }
+
+        final Set<String> toPull = new LinkedHashSet<>(images);
+        toPull.removeAll(PREWARMED_IMAGES);
+        if (toPull.isEmpty())
+        {
+            return List.of();
+        }
+
+        final int parallelism = Integer.parseInt(getSystemProperty("image.prewarm.parallelism", "4"));
+        final DockerClient dockerClient = DockerClientFactory.instance().client();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, toPull.size())));
+        final long start = System.nanoTime();
+        final List<PullResult> results = new ArrayList<>();
+        final Map<String, Future<PullResult>> pulls = new LinkedHashMap<>();
+        toPull.forEach(image -> pulls.put(image, executor.submit(() -> pull(dockerClient, image))));
+        try
+        {
+            for (Map.Entry<String, Future<PullResult>> pull : pulls.entrySet())
+            {
+                try
+                {
+                    final PullResult result = pull.getValue().get();
+                    if (result != null)
+                    {
+                        results.add(result);
+                    }
+                    // Only the images which are available now are skipped next time, failed pulls are retried.
+                    PREWARMED_IMAGES.add(pull.getKey());
+                }
+                catch (ExecutionException e)
+                {
+                    LOGGER.warn("Unable to pre-warm {}, it will be pulled when its container starts.", pull.getKey(), e.getCause());
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while pre-warming the images.");
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        final long totalBytes = results.stream().mapToLong(PullResult::bytes).sum();
+        LOGGER.info("Pre-warmed {} images ({} pulled, {} MB) in {} ms with {} concurrent pulls.", toPull.size(), results.size(), totalBytes / (1024 * 1024),
+                Duration.ofNanos(System.nanoTime() - start).toMillis(), parallelism);
+        return results;
+    }
+
+    /** @return The result of the pull, or null if the image is already available. A failed pull throws. */
+    private static PullResult pull(DockerClient dockerClient, String image) throws InterruptedException
+    {
+        final DockerImageName imageName = ImageNameSubstitutor.instance().apply(DockerImageName.parse(image));
+        try
+        {
+            dockerClient.inspectImageCmd(imageName.asCanonicalNameString()).exec();
+            LOGGER.info("Image {} is already available.", imageName);
+            return null;
+        }
+        catch (NotFoundException e)
+        {
+            // Not available locally, so it needs to be pulled.
+        }
+
+        // The total size of every layer is reported by the progress messages of its download.
+        final Map<String, Long> layerSizes = new ConcurrentHashMap<>();
+        final long start = System.nanoTime();
+        final String canonicalName = imageName.asCanonicalNameString();
+        // A digest can't be given as a tag, the whole reference is pulled instead.
+        final PullImageCmd pullCmd = canonicalName.contains("@")
+                ? dockerClient.pullImageCmd(canonicalName)
+                : dockerClient.pullImageCmd(imageName.getUnversionedPart()).withTag(imageName.getVersionPart());
+        pullCmd.exec(new PullImageResultCallback() {
+            @Override
+            public void onNext(PullResponseItem item)
+            {
+                if (item.getId() != null && item.getProgressDetail() != null && item.getProgressDetail().getTotal() != null
+                        && "Downloading".equals(item.getStatus()))
+                {
+                    layerSizes.merge(item.getId(), item.getProgressDetail().getTotal(), Math::max);
+                }
+                super.onNext(item);
+            }
+        }).awaitCompletion();
+
+        final PullResult result = new PullResult(imageName.asCanonicalNameString(), layerSizes.values().stream().mapToLong(Long::longValue).sum(),
+                Duration.ofNanos(System.nanoTime() - start));
+        LOGGER.info("Pulled {} ({} MB in {} layers) in {} ms.", result.image(), result.bytes() / (1024 * 1024), layerSizes.size(), result.duration().toMillis());
+        return result;
+    }
+
+    /**
+     * The result of pulling an image.
+     *
+     * @param image
+     *            The canonical name of the image.
+     * @param bytes
+     *            The size of the downloaded layers.
+     * @param duration
+     *            The time taken by the pull.
+     */
+    public record PullResult(String image, long bytes, Duration duration)
+    {}
+}
@@ -0,0 +1,226 @@
+package org.alfresco.tas;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.ContainerLaunchException;
+import org.testcontainers.containers.output.FrameConsumerResultCallback;
+import org.testcontainers.containers.output.OutputFrame;
+import org.testcontainers.containers.wait.strategy.AbstractWaitStrategy;
+
+/**
+ * Waits for the repository by polling its server API and discovery endpoints, while scanning its log for errors which mean the bootstrap has failed. A failed bootstrap is
+ * reported as soon as the error is logged rather than after the whole startup timeout.
+ * <p>
+ * Two metrics are recorded, both measured from the start of the container: the time to the first successful request (Tomcat is serving the webapp) and the time to ready (both
+ * endpoints answer successfully).
+ */
+public class RepositoryReadinessWaitStrategy extends AbstractWaitStrategy
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryReadinessWaitStrategy.class);
+
+    private static final int REPOSITORY_PORT = 8080;
+    private static final String SERVER_API_PATH = "/alfresco/service/api/server";
+    private static final String DISCOVERY_PATH = "/alfresco/api/discovery";
+    private static final Duration POLL_INTERVAL = Duration.ofSeconds(1);
+    private static final int REQUEST_TIMEOUT_MS = 5_000;
+
+    private final List<Pattern> fatalLogPatterns = new ArrayList<>(List.of(
+            Pattern.compile(".*Context initialization failed.*"),
+            Pattern.compile(".*One or more listeners failed to start.*"),
+            Pattern.compile(".*Context \\[/alfresco] startup failed due to previous errors.*"),
+            Pattern.compile(".*Schema auto-update failed.*")));
+    private final String authorizationHeader;
+
+    private Duration timeToFirstSuccessfulRequest;
+    private Duration timeToReady;
+
+    /**
+     * @param username
+     *            The user used to call the discovery endpoint.
+     * @param password
+     *            The password of the user.
+     */
+    public RepositoryReadinessWaitStrategy(String username, String password)
+    {
+        this.authorizationHeader = "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Fail the startup as soon as a log line matches the given pattern.
+     *
+     * @param regex
+     *            A regular expression matching a whole log line.
+     * @return This strategy.
+     */
+    public RepositoryReadinessWaitStrategy withFatalLogPattern(String regex)
+    {
+        fatalLogPatterns.add(Pattern.compile(regex));
+        return this;
+    }
+
+    /** @return The time between the container starting and the first successful request, or null if the repository never answered. */
+    public Duration getTimeToFirstSuccessfulRequest()
+    {
+        return timeToFirstSuccessfulRequest;
+    }
+
+    /** @return The time between the container starting and the repository being ready, or null if it never became ready. */
+    public Duration getTimeToReady()
+    {
+        return timeToReady;
+    }
+
+    @Override
+    protected void waitUntilReady()
+    {
+        final long start = getContainerStartNanos();
+        final long deadline = System.nanoTime() + startupTimeout.toNanos();
+        final AtomicReference<String> fatalLogLine = new AtomicReference<>();
+        timeToFirstSuccessfulRequest = null;
+        timeToReady = null;
+
+        final Consumer<OutputFrame> logScanner = frame -> {
+            final String line = frame.getUtf8StringWithoutLineEnding();
+            if (fatalLogLine.get() == null && fatalLogPatterns.stream().anyMatch(pattern -> pattern.matcher(line).matches()))
+            {
+                fatalLogLine.set(line);
+            }
+        };
+        final FrameConsumerResultCallback logFollower = new FrameConsumerResultCallback();
+        logFollower.addConsumer(OutputFrame.OutputType.STDOUT, logScanner);
+        logFollower.addConsumer(OutputFrame.OutputType.STDERR, logScanner);
+        DockerClientFactory.instance().client()
+                .logContainerCmd(waitStrategyTarget.getContainerId())
+                .withFollowStream(true)
+                .withStdOut(true)
+                .withStdErr(true)
+                .exec(logFollower);
+        try
+        {
+            pollUntilReady(start, deadline, fatalLogLine);
+        }
+        finally
+        {
+            try
+            {
+                // Otherwise every start, and every retry, leaves a stream and a thread following the log.
+                logFollower.close();
+            }
+            catch (IOException e)
+            {
+                LOGGER.debug("Unable to stop following the repository log.", e);
+            }
+        }
+    }
+
+    /** @return The start of the container on the {@link System#nanoTime()} scale, or now if Docker doesn't report it. */
+    private long getContainerStartNanos()
+    {
+        final long now = System.nanoTime();
+        try
+        {
+            final String startedAt = waitStrategyTarget.getContainerInfo().getState().getStartedAt();
+            final Duration sinceStart = Duration.between(Instant.parse(startedAt), Instant.now());
+            return sinceStart.isNegative() ? now : now - sinceStart.toNanos();
+        }
+        catch (RuntimeException e)
+        {
+            LOGGER.debug("Unable to read the start time of the repository container, measuring from now.", e);
+            return now;
+        }
+    }
+
+    private void pollUntilReady(long start, long deadline, AtomicReference<String> fatalLogLine)
+    {
+        final String baseUrl = "http://" + waitStrategyTarget.getHost() + ":" + waitStrategyTarget.getMappedPort(REPOSITORY_PORT);
+        while (System.nanoTime() < deadline)
+        {
+            if (fatalLogLine.get() != null)
+            {
+                throw new ContainerLaunchException("The repository failed to bootstrap: " + fatalLogLine.get());
+            }
+            if (!waitStrategyTarget.isRunning())
+            {
+                throw new ContainerLaunchException("The repository container stopped while bootstrapping.");
+            }
+
+            final boolean serverApiReady = isSuccessful(baseUrl + SERVER_API_PATH, null);
+            if (serverApiReady && timeToFirstSuccessfulRequest == null)
+            {
+                timeToFirstSuccessfulRequest = Duration.ofNanos(System.nanoTime() - start);
+            }
+            if (serverApiReady && isSuccessful(baseUrl + DISCOVERY_PATH, authorizationHeader))
+            {
+                timeToReady = Duration.ofNanos(System.nanoTime() - start);
+                LOGGER.info("Repository answered its first request after {} ms and was ready after {} ms.",
+                        timeToFirstSuccessfulRequest.toMillis(), timeToReady.toMillis());
+                return;
+            }
+            sleep();
+        }
+        throw new ContainerLaunchException("Timed out after " + startupTimeout.toSeconds() + " s waiting for the repository to be ready.");
+    }
+
+    private static boolean isSuccessful(String url, String authorization)
+    {
+        try
+        {
+            final HttpURLConnection c = (HttpURLConnection) URI.create(url).toURL().openConnection();
+            c.setConnectTimeout(REQUEST_TIMEOUT_MS);
+            c.setReadTimeout(REQUEST_TIMEOUT_MS);
+            if (authorization != null)
+            {
+                c.setRequestProperty("Authorization", authorization);
+            }
+            try
+            {
+                if (c.getResponseCode() != 200)
+                {
+                    return false;
+                }
+                try (InputStream is = c.getInputStream())
+                {
+                    is.readAllBytes();
+                }
+                return true;
+            }
+            finally
+            {
+                c.disconnect();
+            }
+        }
+        catch (IOException e)
+        {
+            // Tomcat isn't listening yet.
+            return false;
+        }
+    }
+
+    private static void sleep()
+    {
+        try
+        {
+            Thread.sleep(POLL_INTERVAL.toMillis());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new ContainerLaunchException("Interrupted while waiting for the repository.", e);
+        }
+    }
+}
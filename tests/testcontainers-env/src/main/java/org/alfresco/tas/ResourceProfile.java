@@ -0,0 +1,193 @@
+package org.alfresco.tas;
+
+import java.util.Arrays;
+
+import com.github.dockerjava.api.model.Info;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.DockerClientFactory;
+
+/**
+ * The resources given to each container of the stack.
+ * <ul>
+ * <li>small: for runners with little memory, every JVM gets a reduced heap and the containers are capped so they can't starve each other.</li>
+ * <li>ci: the heap sizes the stack has always used, with no memory limits nor CPU quotas.</li>
+ * <li>benchmark: heaps and CPU quotas sized from the Docker host, so that big hosts are fully used and results are repeatable on a given host.</li>
+ * </ul>
+ * The profile is chosen with -Dresource.profile=small|ci|benchmark, ci being the default. With -Dresource.profile=auto it is derived from the cores and memory of the Docker
+ * host.
+ * <p>
+ * The memory limit of transform-core leaves room for LibreOffice and ImageMagick, which run as processes of their own next to the JVM.
+ */
+public enum ResourceProfile
+{
+    SMALL("small"), CI("ci"), BENCHMARK("benchmark");
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourceProfile.class);
+
+    private static final long GB = 1024L * 1024L * 1024L;
+    /** Above this the JVM can't use compressed object pointers. */
+    private static final int MAX_HEAP_MB = 31 * 1024;
+
+    private final String type;
+
+    ResourceProfile(String type)
+    {
+        this.type = type;
+    }
+
+    public String getType()
+    {
+        return this.type;
+    }
+
+    public static ResourceProfile from(String type)
+    {
+        return Arrays.stream(ResourceProfile.values())
+                .filter(profile -> profile.getType().equals(type.toLowerCase()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Resource profile '" + type + "' not defined."));
+    }
+
+    /**
+     * Pick the profile matching the Docker host.
+     *
+     * @return small for hosts with less than 4 cores or 12GB of memory, benchmark for hosts with at least 16 cores and 48GB, ci otherwise.
+     */
+    public static ResourceProfile detect()
+    {
+        final Host host = Host.get();
+        final ResourceProfile profile;
+        if (host.cpus < 4 || host.memoryBytes < 12 * GB)
+        {
+            profile = SMALL;
+        }
+        else if (host.cpus >= 16 && host.memoryBytes >= 48 * GB)
+        {
+            profile = BENCHMARK;
+        }
+        else
+        {
+            profile = CI;
+        }
+        LOGGER.info("Docker host has {} cores and {} MB of memory, using the {} resource profile.", host.cpus, host.memoryBytes / (1024 * 1024), profile.getType());
+        return profile;
+    }
+
+    /**
+     * @param role
+     *            The role of the container.
+     * @return The resources to give to the container.
+     */
+    public ContainerResources getResources(ContainerRole role)
+    {
+        return switch (this)
+        {
+        case SMALL -> small(role);
+        case CI -> ci(role);
+        case BENCHMARK -> benchmark(role, Host.get());
+        };
+    }
+
+    private static ContainerResources small(ContainerRole role)
+    {
+        return switch (role)
+        {
+        case REPOSITORY -> jvm(512, 1024, 2);
+        case SEARCH_ENGINE -> searchEngine(1024, 1);
+        case LIVE_INDEXING -> jvm(512, 1024, 1);
+        case LIVE_INDEXING_WORKER -> jvm(256, 512, 0.5);
+        case REINDEXING -> jvm(0, 512, 1);
+        case ACTIVEMQ -> jvm(256, 512, 0.5);
+        case TRANSFORM_CORE -> transformCore(256, 512, 0.5);
+        case TRANSFORM_ROUTER, SHARED_FILE_STORE -> jvm(128, 256, 0.5);
+        case DATABASE -> new ContainerResources(0, 0, 1, 2048);
+        };
+    }
+
+    private static ContainerResources ci(ContainerRole role)
+    {
+        return switch (role)
+        {
+        case REPOSITORY -> heapOnly(1024, 2048);
+        case SEARCH_ENGINE -> heapOnly(2048, 2048);
+        case LIVE_INDEXING -> heapOnly(2048, 2048);
+        case LIVE_INDEXING_WORKER -> heapOnly(512, 512);
+        case REINDEXING -> heapOnly(0, 1024);
+        case ACTIVEMQ, TRANSFORM_CORE -> heapOnly(512, 1024);
+        case TRANSFORM_ROUTER, SHARED_FILE_STORE -> heapOnly(256, 512);
+        case DATABASE -> heapOnly(0, 0);
+        };
+    }
+
+    /** The benchmark profile gives the indexing pipeline a share of the host, and the ci sizes to the supporting services. */
+    private static ContainerResources benchmark(ContainerRole role, Host host)
+    {
+        final int hostMemoryMb = (int) Math.min(Integer.MAX_VALUE, host.memoryBytes / (1024 * 1024));
+        return switch (role)
+        {
+        case REPOSITORY -> jvm(heap(hostMemoryMb / 8), heap(hostMemoryMb / 8), share(host, 0.25));
+        case SEARCH_ENGINE -> searchEngine(heap(hostMemoryMb / 8), share(host, 0.25));
+        case LIVE_INDEXING, REINDEXING -> jvm(heap(hostMemoryMb / 16), heap(hostMemoryMb / 16), share(host, 0.125));
+        case LIVE_INDEXING_WORKER -> jvm(heap(hostMemoryMb / 64), heap(hostMemoryMb / 64), 1);
+        case DATABASE -> new ContainerResources(0, 0, share(host, 0.125), 0);
+        case TRANSFORM_CORE -> {
+            final ContainerResources ci = ci(role);
+            yield transformCore(ci.minHeapMb(), ci.maxHeapMb(), 1);
+        }
+        default -> {
+            final ContainerResources ci = ci(role);
+            yield jvm(ci.minHeapMb(), ci.maxHeapMb(), 1);
+        }
+        };
+    }
+
+    /** A JVM container, with some room for the non-heap memory. */
+    private static ContainerResources jvm(int minHeapMb, int maxHeapMb, double cpus)
+    {
+        return new ContainerResources(minHeapMb, maxHeapMb, cpus, maxHeapMb + Math.max(256, maxHeapMb / 2));
+    }
+
+    /** The heap the stack has always used, without any limit on the container. */
+    private static ContainerResources heapOnly(int minHeapMb, int maxHeapMb)
+    {
+        return new ContainerResources(minHeapMb, maxHeapMb, 0, 0);
+    }
+
+    /** Transform-core runs LibreOffice and ImageMagick outside of its heap, each conversion can take a few hundred MB of its own. */
+    private static ContainerResources transformCore(int minHeapMb, int maxHeapMb, double cpus)
+    {
+        return new ContainerResources(minHeapMb, maxHeapMb, cpus, maxHeapMb + Math.max(256, maxHeapMb / 2) + 2048);
+    }
+
+    /** The search engine relies on the file system cache, so only half of its memory is given to the heap. */
+    private static ContainerResources searchEngine(int heapMb, double cpus)
+    {
+        return new ContainerResources(heapMb, heapMb, cpus, 2 * heapMb);
+    }
+
+    private static int heap(int heapMb)
+    {
+        return Math.min(MAX_HEAP_MB, heapMb);
+    }
+
+    private static double share(Host host, double share)
+    {
+        return Math.max(1, Math.floor(host.cpus * share));
+    }
+
+    private record Host(int cpus, long memoryBytes)
+    {
+        private static Host instance;
+
+        private static synchronized Host get()
+        {
+            if (instance == null)
+            {
+                final Info info = DockerClientFactory.instance().getInfo();
+                instance = new Host(info.getNCPU(), info.getMemTotal());
+            }
+            return instance;
+        }
+    }
+}
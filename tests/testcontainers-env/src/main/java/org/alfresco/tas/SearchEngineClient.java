@@ -0,0 +1,89 @@
+package org.alfresco.tas;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.stream.Collectors;
+
+import org.testcontainers.containers.GenericContainer;
+
+/** A minimal client for the REST API of the search engine container (Elasticsearch or Opensearch). */
+public class SearchEngineClient
+{
+    private static final int API_TIMEOUT_MS = 60_000;
+
+    private final GenericContainer<?> searchEngineContainer;
+    private String authorizationHeader;
+
+    public SearchEngineClient(GenericContainer<?> searchEngineContainer)
+    {
+        this.searchEngineContainer = searchEngineContainer;
+    }
+
+    /**
+     * Use basic authentication for every request.
+     *
+     * @param username
+     *            The search engine user.
+     * @param password
+     *            The password of the user.
+     * @return This client.
+     */
+    public SearchEngineClient withBasicAuth(String username, String password)
+    {
+        authorizationHeader = "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+        return this;
+    }
+
+    public String get(String path) throws IOException
+    {
+        return send("GET", path, null);
+    }
+
+    public String post(String path, String body) throws IOException
+    {
+        return send("POST", path, body);
+    }
+
+    public String put(String path, String body) throws IOException
+    {
+        return send("PUT", path, body);
+    }
+
+    public String delete(String path) throws IOException
+    {
+        return send("DELETE", path, null);
+    }
+
+    private String send(String method, String path, String body) throws IOException
+    {
+        final URI uri = URI.create("http://" + searchEngineContainer.getHost() + ":" + searchEngineContainer.getMappedPort(9200)).resolve(path);
+        final HttpURLConnection c = (HttpURLConnection) uri.toURL().openConnection();
+        c.setRequestMethod(method);
+        c.setConnectTimeout(API_TIMEOUT_MS);
+        c.setReadTimeout(API_TIMEOUT_MS);
+        if (authorizationHeader != null)
+        {
+            c.setRequestProperty("Authorization", authorizationHeader);
+        }
+        if (body != null)
+        {
+            c.setDoOutput(true);
+            c.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream os = c.getOutputStream())
+            {
+                os.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(c.getInputStream(), StandardCharsets.UTF_8)))
+        {
+            return r.lines().collect(Collectors.joining(System.lineSeparator()));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.alfresco.tas;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a snapshot of the search index taken straight after the first full reindex of a stack.
+ * <p>
+ * Later requests for a full reindex restore the snapshot and then only reindex what has changed since, rather than reindexing every system node again. The index is closed while
+ * it is restored, and the catch-up can't remove the documents of nodes deleted since the snapshot, so this is opt-in (see {@link AlfrescoStackInitializer#reindexEverything()}).
+ */
+public class SearchIndexSnapshotFixture
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchIndexSnapshotFixture.class);
+
+    /** The directory used as the filesystem snapshot repository. It must be listed in the path.repo setting of the search engine. */
+    public static final String SNAPSHOT_REPOSITORY_PATH = "/tmp/search-snapshots";
+
+    private static final String SNAPSHOT_REPOSITORY = "alfresco-test-snapshots";
+    private static final String SNAPSHOT = "after-full-reindex";
+    /** The reindexer compares dates to the minute using the repository clock, so allow some slack when catching up. */
+    private static final Duration CATCH_UP_MARGIN = Duration.ofMinutes(2);
+
+    private final SearchEngineClient searchEngineClient;
+    private final String indexName;
+
+    private ZonedDateTime fullReindexStartedAt;
+    private Duration fullReindexDuration;
+
+    public SearchIndexSnapshotFixture(SearchEngineClient searchEngineClient, String indexName)
+    {
+        this.searchEngineClient = searchEngineClient;
+        this.indexName = indexName;
+    }
+
+    /**
+     * Run a full reindex, or restore the snapshot of a previous one.
+     *
+     * @param fullReindex
+     *            Runs the full reindex. Only called if no snapshot has been taken yet.
+     * @param catchUpReindex
+     *            Reindexes everything changed since the given time (in the reindexer date format). Called after restoring the snapshot.
+     */
+    public void reindexEverything(Runnable fullReindex, Consumer<String> catchUpReindex)
+    {
+        if (fullReindexStartedAt == null)
+        {
+            fullReindexStartedAt = ZonedDateTime.now(Clock.systemUTC());
+            final long reindexStart = System.nanoTime();
+            fullReindex.run();
+            fullReindexDuration = Duration.ofNanos(System.nanoTime() - reindexStart);
+
+            final long snapshotStart = System.nanoTime();
+            takeSnapshot();
+            LOGGER.info("Full reindex took {} ms, taking a snapshot of `{}` took {} ms.",
+                    fullReindexDuration.toMillis(), indexName, Duration.ofNanos(System.nanoTime() - snapshotStart).toMillis());
+            return;
+        }
+
+        final long restoreStart = System.nanoTime();
+        restoreSnapshot();
+        final Duration restoreDuration = Duration.ofNanos(System.nanoTime() - restoreStart);
+
+        final long catchUpStart = System.nanoTime();
+        catchUpReindex.accept(DateTimeFormatter.ofPattern("yyyyMMddHHmm").format(fullReindexStartedAt.minus(CATCH_UP_MARGIN)));
+        LOGGER.info("Restoring `{}` took {} ms and the catch-up reindex took {} ms, instead of {} ms for a full reindex.",
+                indexName, restoreDuration.toMillis(), Duration.ofNanos(System.nanoTime() - catchUpStart).toMillis(), fullReindexDuration.toMillis());
+    }
+
+    private void takeSnapshot()
+    {
+        try
+        {
+            searchEngineClient.put("/_snapshot/" + SNAPSHOT_REPOSITORY,
+                    "{\"type\":\"fs\",\"settings\":{\"location\":\"" + SNAPSHOT_REPOSITORY_PATH + "\"}}");
+            searchEngineClient.put("/_snapshot/" + SNAPSHOT_REPOSITORY + "/" + SNAPSHOT + "?wait_for_completion=true",
+                    "{\"indices\":\"" + indexName + "\",\"include_global_state\":false}");
+        }
+        catch (IOException e)
+        {
+            // Without a snapshot every call falls back to a full reindex.
+            fullReindexStartedAt = null;
+            LOGGER.warn("Unable to take a snapshot of `{}`.", indexName, e);
+        }
+    }
+
+    private void restoreSnapshot()
+    {
+        try
+        {
+            // An open index can't be restored over.
+            searchEngineClient.post("/" + indexName + "/_close", null);
+            searchEngineClient.post("/_snapshot/" + SNAPSHOT_REPOSITORY + "/" + SNAPSHOT + "/_restore?wait_for_completion=true",
+                    "{\"indices\":\"" + indexName + "\",\"include_global_state\":false}");
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Unable to restore the snapshot of `" + indexName + "`.", e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.alfresco.tas;
+
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reference counts the test contexts which use a running Alfresco stack, so that contexts with a compatible configuration can share it rather than booting a new one.
+ * <p>
+ * Every started stack gets its own lease. When an incompatible context needs a new stack, the running one is retired: it is stopped straight away if no context holds it any
+ * more, otherwise it keeps running next to the new stack until the last context holding it is closed, as the cached contexts still point at its containers.
+ */
+final class StackLease
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(StackLease.class);
+
+    private static StackLease current;
+
+    private final String stackKey;
+    private int holders;
+    private Runnable stopStack;
+
+    private StackLease(String stackKey)
+    {
+        this.stackKey = Objects.requireNonNull(stackKey);
+    }
+
+    /**
+     * Try to lease the running stack.
+     *
+     * @param stackKey
+     *            The key describing the stack configuration required by the caller.
+     * @return The lease if a stack with the same key is running, null if a new stack needs to be started.
+     */
+    static synchronized StackLease tryAcquire(String stackKey)
+    {
+        if (current == null || !current.stackKey.equals(stackKey))
+        {
+            return null;
+        }
+        current.holders++;
+        LOGGER.info("Reusing the running stack, now leased by {} contexts.", current.holders);
+        return current;
+    }
+
+    /**
+     * Retire the running stack, because an incompatible one is about to be started.
+     *
+     * @param stopStack
+     *            Stops the containers of the running stack. Called now if no context holds the stack, otherwise when the last one releases it.
+     */
+    static synchronized void retire(Runnable stopStack)
+    {
+        final StackLease previous = current;
+        current = null;
+        if (previous == null || previous.holders == 0)
+        {
+            stopStack.run();
+            return;
+        }
+        LOGGER.info("Keeping the running stack until the {} contexts still leasing it are closed, as the requested configuration is not compatible with it.",
+                previous.holders);
+        previous.stopStack = stopStack;
+    }
+
+    /**
+     * Record that a new stack has been started and lease it to the caller.
+     *
+     * @param stackKey
+     *            The key describing the configuration of the new stack.
+     * @return The lease.
+     */
+    static synchronized StackLease acquireNew(String stackKey)
+    {
+        current = new StackLease(stackKey);
+        current.holders = 1;
+        return current;
+    }
+
+    /**
+     * Give back the lease. The running stack is kept so that the next compatible context can reuse it, a retired stack is stopped once it isn't leased any more.
+     */
+    void release()
+    {
+        synchronized (StackLease.class)
+        {
+            if (holders > 0)
+            {
+                holders--;
+            }
+            if (holders == 0 && stopStack != null)
+            {
+                LOGGER.info("Stopping the retired stack, which is no longer leased.");
+                final Runnable stop = stopStack;
+                stopStack = null;
+                stop.run();
+            }
+        }
+    }
+}
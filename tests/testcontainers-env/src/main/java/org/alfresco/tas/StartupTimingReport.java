@@ -0,0 +1,184 @@
+package org.alfresco.tas;
+
+import static org.alfresco.tas.SystemPropertyHelper.getSystemProperty;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.alfresco.tas.ContainerStartupGraph.StartupReport;
+import org.alfresco.tas.ContainerStartupGraph.Timing;
+
+/**
+ * Writes the timings of a stack startup as JSON and compares them with a stored baseline.
+ * <p>
+ * The report is written to -Dstack.timing.report (target/stack-startup-timings.json by default). A previous report can be used as a baseline by passing
+ * -Dstack.timing.baseline=path/to/report.json; any phase taking more than -Dstack.timing.threshold times its baseline (1.5 by default) plus -Dstack.timing.tolerance.ms
+ * (10000 by default) is reported as a regression. Pulling images (and so the total time) is not compared, as it mostly depends on the state of the local image
+ * cache.
+ */
+public class StartupTimingReport
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupTimingReport.class);
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private final Map<String, Object> json;
+
+    private StartupTimingReport(Map<String, Object> json)
+    {
+        this.json = json;
+    }
+
+    /**
+     * Build the report of a stack startup.
+     *
+     * @param startupReport
+     *            The timings recorded while starting the stack.
+     * @param stackKey
+     *            A description of the stack, used to check that the baseline was recorded for the same configuration.
+     * @return The report.
+     */
+    public static StartupTimingReport of(StartupReport startupReport, String stackKey)
+    {
+        final Map<String, Object> containers = new LinkedHashMap<>();
+        for (Timing timing : startupReport.timings().values())
+        {
+            final Map<String, Object> phases = new LinkedHashMap<>();
+            timing.phases().forEach((phase, duration) -> phases.put(phase, duration.toMillis()));
+
+            final Map<String, Object> container = new LinkedHashMap<>();
+            container.put("startedAtMs", timing.startedAt().toMillis());
+            container.put("readyAtMs", timing.readyAt().toMillis());
+            container.put("durationMs", timing.duration().toMillis());
+            container.put("phasesMs", phases);
+            containers.put(timing.name(), container);
+        }
+
+        final Map<String, Object> json = new LinkedHashMap<>();
+        json.put("stack", stackKey);
+        json.put("totalMs", startupReport.total().toMillis());
+        json.put("criticalPath", startupReport.criticalPath());
+        json.put("containers", containers);
+        return new StartupTimingReport(json);
+    }
+
+    /**
+     * Add a metric measured outside of the startup graph, e.g. by a wait strategy.
+     *
+     * @param containerName
+     *            The name of the container in the startup graph.
+     * @param metricName
+     *            The name of the metric.
+     * @param value
+     *            The measured duration. Ignored if null.
+     * @return This report.
+     */
+    @SuppressWarnings("unchecked")
+    public StartupTimingReport withMetric(String containerName, String metricName, Duration value)
+    {
+        final Map<String, Object> container = (Map<String, Object>) ((Map<String, Object>) json.get("containers")).get(containerName);
+        if (container != null && value != null)
+        {
+            ((Map<String, Object>) container.computeIfAbsent("metricsMs", key -> new LinkedHashMap<String, Object>())).put(metricName, value.toMillis());
+        }
+        return this;
+    }
+
+    /** Write the report to the location given by -Dstack.timing.report. Failing to write it doesn't fail the startup. */
+    public void write()
+    {
+        final Path reportPath = Path.of(getSystemProperty("stack.timing.report", "target/stack-startup-timings.json"));
+        try
+        {
+            if (reportPath.getParent() != null)
+            {
+                Files.createDirectories(reportPath.getParent());
+            }
+            try (Writer writer = Files.newBufferedWriter(reportPath, StandardCharsets.UTF_8))
+            {
+                GSON.toJson(json, writer);
+            }
+            LOGGER.info("Stack startup timings written to {}", reportPath.toAbsolutePath());
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Unable to write the stack startup timings to {}", reportPath, e);
+        }
+    }
+
+    /**
+     * Compare the report with the baseline given by -Dstack.timing.baseline.
+     *
+     * @return A description of every phase which regressed. Empty if there is no baseline or nothing regressed.
+     */
+    public List<String> findRegressions()
+    {
+        final String baselineLocation = getSystemProperty("stack.timing.baseline", "");
+        if (baselineLocation.isEmpty())
+        {
+            return List.of();
+        }
+        final Map<String, Object> baseline = readBaseline(Path.of(baselineLocation));
+        if (!json.get("stack").equals(baseline.get("stack")))
+        {
+            LOGGER.warn("The startup baseline {} was recorded for a different stack, skipping the comparison.", baselineLocation);
+            return List.of();
+        }
+
+        final double threshold = Double.parseDouble(getSystemProperty("stack.timing.threshold", "1.5"));
+        final Duration tolerance = Duration.ofMillis(Long.parseLong(getSystemProperty("stack.timing.tolerance.ms", "10000")));
+        final Map<String, Long> current = comparablePhases(json);
+        final Map<String, Long> expected = comparablePhases(baseline);
+
+        final List<String> regressions = new ArrayList<>();
+        current.forEach((phase, millis) -> {
+            final Long baselineMillis = expected.get(phase);
+            if (baselineMillis != null && millis > baselineMillis * threshold + tolerance.toMillis())
+            {
+                regressions.add(phase + " took " + millis + " ms instead of " + baselineMillis + " ms");
+            }
+        });
+        return regressions;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> readBaseline(Path baselinePath)
+    {
+        try (Reader reader = Files.newBufferedReader(baselinePath, StandardCharsets.UTF_8))
+        {
+            return GSON.fromJson(reader, Map.class);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Unable to read the stack startup baseline " + baselinePath, e);
+        }
+    }
+
+    /** Flatten a report into `container/phase` entries. Numbers read back from JSON are doubles, hence the use of {@link Number}. */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Long> comparablePhases(Map<String, Object> report)
+    {
+        final Map<String, Long> phases = new LinkedHashMap<>();
+        ((Map<String, Object>) report.get("containers")).forEach((container, timing) -> ((Map<String, Object>) ((Map<String, Object>) timing).get("phasesMs"))
+                .forEach((phase, millis) -> {
+                    if (!ContainerStartupGraph.PULL.equals(phase))
+                    {
+                        phases.put(container + "/" + phase, ((Number) millis).longValue());
+                    }
+                }));
+        return phases;
+    }
+}